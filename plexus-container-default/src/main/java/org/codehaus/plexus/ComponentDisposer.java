@@ -0,0 +1,400 @@
+package org.codehaus.plexus;
+
+/*
+ * Copyright 2001-2006 Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.codehaus.plexus.component.composition.CompositionException;
+import org.codehaus.plexus.component.composition.CompositionResolver;
+import org.codehaus.plexus.component.composition.DefaultCompositionResolver;
+import org.codehaus.plexus.component.manager.ComponentManager;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Disposes the component managers of a registry.  Without an executor the managers are disposed one at a time, in the
+ * reverse of the order they were started.  With an executor a manager is disposed once all of the managers requiring
+ * it have been disposed, and managers that do not depend on each other are disposed concurrently.  The requirement
+ * graph is built with a {@link DefaultCompositionResolver}; if it is cyclic, the managers are disposed one at a time.
+ *
+ * A manager that takes longer than the timeout to dispose is reported.  When disposing concurrently, the managers it
+ * requires are then disposed without waiting for it any longer.
+ */
+final class ComponentDisposer
+{
+    /**
+     * The number of slowest disposals listed in the debug report
+     */
+    private static final int SLOWEST_REPORTED = 5;
+
+    private final Logger logger;
+
+    private final Executor executor;
+
+    private final long timeoutMillis;
+
+    private final Listener listener;
+
+    interface Listener
+    {
+        void disposed( ComponentManager<?> componentManager );
+    }
+
+    ComponentDisposer( Logger logger, Executor executor, long timeoutMillis, Listener listener )
+    {
+        this.logger = logger;
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+        this.listener = listener;
+    }
+
+    public void dispose( List<ComponentManager<?>> managers )
+    {
+        // reverse sort the managers by startId
+        List<Disposal> disposals = new ArrayList<Disposal>( managers.size() );
+        for ( ComponentManager<?> componentManager : managers )
+        {
+            disposals.add( new Disposal( componentManager ) );
+        }
+        Collections.sort( disposals, new Comparator<Disposal>()
+        {
+            public int compare( Disposal left, Disposal right )
+            {
+                long leftStartId = left.componentManager.getStartId();
+                long rightStartId = right.componentManager.getStartId();
+                return leftStartId < rightStartId ? 1 : ( leftStartId == rightStartId ? 0 : -1 );
+            }
+        } );
+
+        if ( executor == null || !linkRequirements( disposals ) )
+        {
+            disposeSerially( disposals );
+        }
+        else
+        {
+            disposeInParallel( disposals );
+        }
+
+        report( disposals );
+    }
+
+    /**
+     * Links each disposal to the disposals of the components it requires.
+     * @return false if the requirements are cyclic
+     */
+    private boolean linkRequirements( List<Disposal> disposals )
+    {
+        CompositionResolver compositionResolver = new DefaultCompositionResolver();
+        Map<String, List<Disposal>> disposalsByKey = new HashMap<String, List<Disposal>>();
+        try
+        {
+            for ( Disposal disposal : disposals )
+            {
+                ComponentDescriptor<?> descriptor = disposal.componentManager.getComponentDescriptor();
+                compositionResolver.addComponentDescriptor( descriptor );
+
+                String key = descriptor.getRole() + CompositionResolver.SEPARATOR_CHAR + descriptor.getRoleHint();
+                List<Disposal> keyDisposals = disposalsByKey.get( key );
+                if ( keyDisposals == null )
+                {
+                    keyDisposals = new ArrayList<Disposal>( 1 );
+                    disposalsByKey.put( key, keyDisposals );
+                }
+                keyDisposals.add( disposal );
+            }
+        }
+        catch ( CompositionException e )
+        {
+            logger.warn( "Cannot dispose components in parallel: " + e.getMessage() );
+            return false;
+        }
+
+        for ( Disposal disposal : disposals )
+        {
+            ComponentDescriptor<?> descriptor = disposal.componentManager.getComponentDescriptor();
+            List<?> requirements = compositionResolver.getRequirements( descriptor.getRole(), descriptor.getRoleHint() );
+            for ( Object requirementKey : requirements )
+            {
+                List<Disposal> required = disposalsByKey.get( requirementKey );
+                if ( required == null )
+                {
+                    continue;
+                }
+                for ( Disposal requiredDisposal : required )
+                {
+                    if ( requiredDisposal != disposal && disposal.requirements.add( requiredDisposal ) )
+                    {
+                        requiredDisposal.pendingDependents++;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private void disposeSerially( List<Disposal> disposals )
+    {
+        for ( Disposal disposal : disposals )
+        {
+            disposal.run();
+            if ( disposal.isSlow() )
+            {
+                logger.warn( "Component " + disposal + " took " + disposal.getMillis() + " ms to dispose" );
+            }
+            listener.disposed( disposal.componentManager );
+        }
+    }
+
+    private void disposeInParallel( List<Disposal> disposals )
+    {
+        BlockingQueue<Disposal> disposed = new LinkedBlockingQueue<Disposal>();
+        Set<Disposal> running = new LinkedHashSet<Disposal>();
+
+        for ( Disposal disposal : disposals )
+        {
+            if ( disposal.pendingDependents == 0 )
+            {
+                execute( disposal, disposed, running );
+            }
+        }
+
+        boolean interrupted = false;
+        while ( !running.isEmpty() )
+        {
+            Disposal disposal;
+            try
+            {
+                long waitNanos = getWaitNanos( running );
+                disposal = waitNanos < 0 ? disposed.take() : disposed.poll( waitNanos, TimeUnit.NANOSECONDS );
+            }
+            catch ( InterruptedException e )
+            {
+                // the container is shutting down anyway; finish disposing and keep the interrupt
+                interrupted = true;
+                continue;
+            }
+
+            if ( disposal == null )
+            {
+                // stop waiting for the disposals that are taking too long
+                for ( Disposal timedOut : new ArrayList<Disposal>( running ) )
+                {
+                    if ( timedOut.isSlow() )
+                    {
+                        logger.warn( "Component " + timedOut + " did not dispose within " + timeoutMillis +
+                            " ms; continuing with the components it requires" );
+                        completed( timedOut, disposed, running );
+                    }
+                }
+            }
+            else if ( running.contains( disposal ) )
+            {
+                if ( disposal.isSlow() )
+                {
+                    logger.warn( "Component " + disposal + " took " + disposal.getMillis() + " ms to dispose" );
+                }
+                completed( disposal, disposed, running );
+            }
+        }
+
+        if ( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the time until the first running disposal times out.
+     * @return the nanoseconds to wait, or -1 to wait until a disposal completes
+     */
+    private long getWaitNanos( Set<Disposal> running )
+    {
+        if ( timeoutMillis <= 0 )
+        {
+            return -1;
+        }
+
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos( timeoutMillis );
+        long now = System.nanoTime();
+        long waitNanos = timeoutNanos;
+        for ( Disposal disposal : running )
+        {
+            // disposals still queued on the executor have not started timing
+            long startNanos = disposal.startNanos;
+            if ( startNanos != 0 )
+            {
+                waitNanos = Math.min( waitNanos, startNanos + timeoutNanos - now );
+            }
+        }
+        return Math.max( waitNanos, 1 );
+    }
+
+    private void completed( Disposal disposal, BlockingQueue<Disposal> disposed, Set<Disposal> running )
+    {
+        running.remove( disposal );
+        listener.disposed( disposal.componentManager );
+
+        for ( Disposal required : disposal.requirements )
+        {
+            if ( --required.pendingDependents == 0 )
+            {
+                execute( required, disposed, running );
+            }
+        }
+    }
+
+    private void execute( final Disposal disposal, final BlockingQueue<Disposal> disposed, Set<Disposal> running )
+    {
+        running.add( disposal );
+
+        Runnable task = new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    disposal.run();
+                }
+                finally
+                {
+                    disposed.add( disposal );
+                }
+            }
+        };
+
+        try
+        {
+            executor.execute( task );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            // a saturated or shut down executor must not leave components undisposed
+            task.run();
+        }
+    }
+
+    private void report( List<Disposal> disposals )
+    {
+        if ( !logger.isDebugEnabled() || disposals.isEmpty() )
+        {
+            return;
+        }
+
+        List<Disposal> slowest = new ArrayList<Disposal>( disposals );
+        Collections.sort( slowest, new Comparator<Disposal>()
+        {
+            public int compare( Disposal left, Disposal right )
+            {
+                long leftNanos = left.getNanos();
+                long rightNanos = right.getNanos();
+                return leftNanos < rightNanos ? 1 : ( leftNanos == rightNanos ? 0 : -1 );
+            }
+        } );
+
+        StringBuilder message = new StringBuilder( "Disposed " ).append( disposals.size() ).append(
+            " components; slowest:" );
+        for ( Disposal disposal : slowest.subList( 0, Math.min( SLOWEST_REPORTED, slowest.size() ) ) )
+        {
+            message.append( ' ' ).append( disposal ).append( " (" ).append( disposal.getMillis() ).append( " ms)" );
+        }
+        logger.debug( message.toString() );
+    }
+
+    private final class Disposal
+    {
+        private final ComponentManager<?> componentManager;
+
+        /**
+         * The disposals of the components this component requires; only accessed by the disposing thread
+         */
+        private final Set<Disposal> requirements = new LinkedHashSet<Disposal>();
+
+        /**
+         * The number of components requiring this component that have not been disposed; only accessed by the
+         * disposing thread
+         */
+        private int pendingDependents;
+
+        private volatile long startNanos;
+
+        private volatile long endNanos;
+
+        private Disposal( ComponentManager<?> componentManager )
+        {
+            this.componentManager = componentManager;
+        }
+
+        private void run()
+        {
+            startNanos = System.nanoTime();
+            try
+            {
+                componentManager.dispose();
+            }
+            catch ( Exception e )
+            {
+                // todo dain use a monitor instead of a logger
+                logger.error( "Error while disposing component manager. Continuing with the rest", e );
+            }
+            finally
+            {
+                endNanos = System.nanoTime();
+            }
+        }
+
+        /**
+         * Gets the time spent disposing, so far if the disposal has not completed.
+         */
+        private long getNanos()
+        {
+            long startNanos = this.startNanos;
+            if ( startNanos == 0 )
+            {
+                return 0;
+            }
+            long endNanos = this.endNanos;
+            return ( endNanos != 0 ? endNanos : System.nanoTime() ) - startNanos;
+        }
+
+        private long getMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis( getNanos() );
+        }
+
+        private boolean isSlow()
+        {
+            return timeoutMillis > 0 && getNanos() >= TimeUnit.MILLISECONDS.toNanos( timeoutMillis );
+        }
+
+        public String toString()
+        {
+            return componentManager.getComponentDescriptor().getHumanReadableKey();
+        }
+    }
+}
@@ -16,10 +16,12 @@ package org.codehaus.plexus;
  * limitations under the License.
  */
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.codehaus.plexus.component.ComponentHandle;
 import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
 import org.codehaus.plexus.component.repository.exception.ComponentRepositoryException;
 import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
@@ -39,6 +41,13 @@ public interface ComponentRegistry
     <T> void addComponentDescriptor( ComponentDescriptor<T> componentDescriptor )
         throws ComponentRepositoryException;
 
+    /**
+     * Adds all of the component descriptors.  The descriptors are all verified before any is registered, and are
+     * published to lookups together; listeners are notified after the whole batch has been registered.
+     */
+    void addComponentDescriptors( Collection<? extends ComponentDescriptor<?>> componentDescriptors )
+        throws ComponentRepositoryException;
+
     <T> ComponentDescriptor<T> getComponentDescriptor( Class<T> type, String roleHint );
 
     <T> List<ComponentDescriptor<T>> getComponentDescriptorList( Class<T> type );
@@ -53,6 +62,26 @@ public interface ComponentRegistry
     <T> T lookup( ComponentDescriptor<T> componentDescriptor )
         throws ComponentLookupException;
 
+    /**
+     * Looks up the component without waiting for its asynchronous start to complete.  Components without an
+     * asynchronous start are started before they are returned, as they are by lookup.
+     *
+     * @see #awaitStarted(Object)
+     */
+    <T> T lookupStarting( ComponentDescriptor<T> componentDescriptor )
+        throws ComponentLookupException;
+
+    /**
+     * Waits until the asynchronous start of a component returned by lookupStarting has completed.
+     *
+     * @throws ComponentLookupException if the component could not be started
+     */
+    void awaitStarted( Object component )
+        throws ComponentLookupException;
+
+    <T> ComponentHandle<T> resolve( Class<T> type, String roleHint )
+        throws ComponentLookupException;
+
     <T> List<T> lookupList( Class<T> type, List<String> hints )
         throws ComponentLookupException;
 
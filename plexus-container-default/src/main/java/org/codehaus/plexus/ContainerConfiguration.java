@@ -3,6 +3,7 @@ package org.codehaus.plexus;
 import java.net.URL;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.codehaus.plexus.classworlds.ClassWorld;
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
@@ -96,5 +97,78 @@ public interface ContainerConfiguration
     List<Class> getComponentDiscoverers();
     
     List<Class> getComponentDiscoveryListeners();
+
+    // Load-on-start components
+
+    /**
+     * Sets the executor used to create the load-on-start components in parallel.  Components are created only after
+     * the load-on-start components they require, and independent components are created concurrently.  The container
+     * does not shut the executor down.
+     *
+     * @param executor the executor, or null to create the load-on-start components one at a time
+     */
+    ContainerConfiguration setLoadOnStartExecutor( Executor executor );
+
+    Executor getLoadOnStartExecutor();
+
+    // Lazy requirements
+
+    /**
+     * Sets whether all requirements injected into a field or property with an interface type are resolved lazily,
+     * rather than only the requirements marked lazy.
+     *
+     * @see org.codehaus.plexus.component.repository.ComponentRequirement#isLazy()
+     */
+    ContainerConfiguration setLazyRequirements( boolean lazyRequirements );
+
+    boolean isLazyRequirements();
+
+    // Precompiled injection
+
+    /**
+     * Sets whether components are created by precompiled injectors rather than by matching their fields and
+     * properties for each instance.  Components that the injectors do not support are still created by xbean-reflect.
+     *
+     * @see org.codehaus.plexus.component.builder.InjectorComponentBuilder
+     */
+    ContainerConfiguration setPrecompiledInjection( boolean precompiledInjection );
+
+    boolean isPrecompiledInjection();
+
+    // Asynchronous start
+
+    /**
+     * Sets the executor used to start the components with an asynchronous start.  The container does not shut the
+     * executor down.
+     *
+     * @param executor the executor, or null to start all components on the thread creating them
+     * @see org.codehaus.plexus.component.repository.ComponentDescriptor#isAsyncStart()
+     */
+    ContainerConfiguration setStartExecutor( Executor executor );
+
+    Executor getStartExecutor();
+
+    // Disposal
+
+    /**
+     * Sets the executor used to dispose the components in parallel.  A component is disposed only after the components
+     * requiring it, and independent components are disposed concurrently.  The container does not shut the executor
+     * down.
+     *
+     * @param executor the executor, or null to dispose the components one at a time
+     */
+    ContainerConfiguration setDisposeExecutor( Executor executor );
+
+    Executor getDisposeExecutor();
+
+    /**
+     * Sets the time a component may take to dispose before it is reported as slow.  When disposing in parallel, the
+     * components it requires are then disposed without waiting for it.
+     *
+     * @param timeout the timeout in milliseconds, or 0 for no timeout
+     */
+    ContainerConfiguration setComponentDisposeTimeout( long timeout );
+
+    long getComponentDisposeTimeout();
 }
 
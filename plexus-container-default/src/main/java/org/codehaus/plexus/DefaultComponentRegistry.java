@@ -1,19 +1,18 @@
 package org.codehaus.plexus;
 
 import static com.google.common.base.ReferenceType.WEAK;
-import static com.google.common.collect.Iterables.concat;
-import com.google.common.collect.ListMultimap;
-import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newConcurrentHashMap;
-import com.google.common.collect.Multimaps;
 import com.google.common.collect.ReferenceMap;
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
 import static org.codehaus.plexus.component.CastUtils.cast;
+import org.codehaus.plexus.component.ComponentHandle;
 import org.codehaus.plexus.component.ComponentIndex;
+import org.codehaus.plexus.component.WeakIdentityMap;
 import static org.codehaus.plexus.component.ComponentStack.pushComponentStack;
 import static org.codehaus.plexus.component.ComponentStack.popComponentStack;
 import org.codehaus.plexus.component.manager.ComponentManager;
 import org.codehaus.plexus.component.manager.ComponentManagerFactory;
+import org.codehaus.plexus.component.manager.SingletonComponentManager;
 import org.codehaus.plexus.component.manager.StaticComponentManager;
 import org.codehaus.plexus.component.repository.ComponentDescriptor;
 import org.codehaus.plexus.component.repository.ComponentDescriptorListener;
@@ -27,14 +26,15 @@ import org.codehaus.plexus.logging.Logger;
 import org.codehaus.plexus.logging.NullLogger;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DefaultComponentRegistry implements ComponentRegistry
@@ -47,16 +47,26 @@ public class DefaultComponentRegistry implements ComponentRegistry
 
     private final AtomicBoolean disposed = new AtomicBoolean( false );
 
+    private volatile Executor disposeExecutor;
+
+    private volatile long componentDisposeTimeout;
+
     private final ConcurrentMap<String, ComponentManagerFactory> componentManagerFactories = newConcurrentHashMap();
 
     private final ComponentIndex<ComponentManager<?>> index = new ComponentIndex<ComponentManager<?>>();
     private final Map<ComponentDescriptor<?>, ComponentManager<?>> componentManagersByComponentDescriptor =
         new ReferenceMap<ComponentDescriptor<?>, ComponentManager<?>>( WEAK, WEAK);
 
-    private final Map<Object, ComponentManager<?>> componentManagersByComponent =
-        new ReferenceMap<Object, ComponentManager<?>>( WEAK, WEAK);
+    private final WeakIdentityMap<Object, ComponentManager<?>> componentManagersByComponent =
+        new WeakIdentityMap<Object, ComponentManager<?>>();
 
-    private final ListMultimap<Pair<Class<?>, String>, ComponentDescriptorListener<?>> listeners = Multimaps.newArrayListMultimap();
+    private final ConcurrentMap<ComponentManager<?>, DefaultComponentHandle<?>> componentHandles = newConcurrentHashMap();
+
+    /**
+     * Listeners by role.  The RoleListeners are immutable and replaced by writers (which are serialized on this
+     * object), so events are dispatched without locking or allocating.
+     */
+    private final ConcurrentMap<Class<?>, RoleListeners> listeners = newConcurrentHashMap();
 
     public DefaultComponentRegistry( MutablePlexusContainer container, LifecycleHandlerManager lifecycleHandlerManager )
     {
@@ -87,42 +97,45 @@ public class DefaultComponentRegistry implements ComponentRegistry
             managers = new ArrayList<ComponentManager<?>>( index.clear() );
             componentManagersByComponentDescriptor.clear();
             componentManagersByComponent.clear();
+        }
 
+        for ( ComponentManager<?> componentManager : managers )
+        {
+            invalidateComponentHandle( componentManager );
         }
 
-        // reverse sort the managers by startId
-        Collections.sort( managers, new Comparator<ComponentManager<?>>() {
-            public int compare( ComponentManager<?> left, ComponentManager<?> right )
+        // Call dispose callback outside of synchronized lock to avoid deadlocks
+        ComponentDisposer disposer = new ComponentDisposer( logger, disposeExecutor, componentDisposeTimeout,
+            new ComponentDisposer.Listener()
             {
-                if (left.getStartId() < right.getStartId() )
+                public void disposed( ComponentManager<?> componentManager )
                 {
-                    return 1;
+                    fireComponentDescriptorRemoved( componentManager.getComponentDescriptor() );
                 }
-                else if (left.getStartId() == right.getStartId() )
-                {
-                    return 0;
-                }
-                else
-                {
-                    return -1;
-                }
-            }
-        });
+            } );
+        disposer.dispose( managers );
+    }
 
-        // Call dispose callback outside of synchronized lock to avoid deadlocks
-        for ( ComponentManager<?> componentManager : managers )
-        {
-            try
-            {
-                componentManager.dispose();
-            }
-            catch ( Exception e )
-            {
-                // todo dain use a monitor instead of a logger
-                logger.error( "Error while disposing component manager. Continuing with the rest", e );
-            }
-            fireComponentDescriptorRemoved( componentManager.getComponentDescriptor() );
-        }
+    /**
+     * Sets the executor used to dispose the component managers in parallel, in the reverse order of their
+     * requirements.
+     *
+     * @param disposeExecutor the executor, or null to dispose the managers one at a time
+     */
+    public void setDisposeExecutor( Executor disposeExecutor )
+    {
+        this.disposeExecutor = disposeExecutor;
+    }
+
+    /**
+     * Sets the time a component manager may take to dispose before it is reported as slow.  When disposing in
+     * parallel the managers it requires are then disposed without waiting for it.
+     *
+     * @param componentDisposeTimeout the timeout in milliseconds, or 0 for no timeout
+     */
+    public void setComponentDisposeTimeout( long componentDisposeTimeout )
+    {
+        this.componentDisposeTimeout = componentDisposeTimeout;
     }
 
     //
@@ -145,11 +158,57 @@ public class DefaultComponentRegistry implements ComponentRegistry
 
     public <T> void addComponentDescriptor( ComponentDescriptor<T> componentDescriptor ) throws ComponentRepositoryException
     {
+        addComponentDescriptors( Collections.<ComponentDescriptor<?>>singletonList( componentDescriptor ) );
+    }
+
+    public void addComponentDescriptors( Collection<? extends ComponentDescriptor<?>> componentDescriptors )
+        throws ComponentRepositoryException
+    {
+        if ( componentDescriptors.isEmpty() )
+        {
+            return;
+        }
+
         if ( disposed.get() )
         {
-            throw new ComponentRepositoryException("ComponentRegistry has been disposed", componentDescriptor);
+            throw new ComponentRepositoryException("ComponentRegistry has been disposed",
+                componentDescriptors.iterator().next());
+        }
+
+        // Create all ComponentManagers before registering any, so an invalid descriptor rejects the whole batch
+        List<ComponentManager<?>> componentManagers = new ArrayList<ComponentManager<?>>( componentDescriptors.size() );
+        List<ComponentIndex.Registration<ComponentManager<?>>> registrations =
+            new ArrayList<ComponentIndex.Registration<ComponentManager<?>>>( componentDescriptors.size() );
+        for ( ComponentDescriptor<?> componentDescriptor : componentDescriptors )
+        {
+            ComponentManager<?> componentManager = createComponentManager( componentDescriptor );
+            componentManagers.add( componentManager );
+            registrations.add( new ComponentIndex.Registration<ComponentManager<?>>( componentDescriptor.getRealm(),
+                componentDescriptor.getRoleClass(),
+                componentDescriptor.getRoleHint(),
+                componentManager ) );
+        }
+
+        // Add componentManagers to indexe
+        synchronized ( index )
+        {
+            index.addAll( registrations );
+            for ( ComponentManager<?> componentManager : componentManagers )
+            {
+                componentManagersByComponentDescriptor.put( componentManager.getComponentDescriptor(), componentManager );
+            }
+        }
+
+        // Listeners are notified once the whole batch is visible
+        for ( ComponentManager<?> componentManager : componentManagers )
+        {
+            fireComponentDescriptorAdded( componentManager.getComponentDescriptor() );
         }
+    }
 
+    private <T> ComponentManager<T> createComponentManager( ComponentDescriptor<T> componentDescriptor )
+        throws ComponentRepositoryException
+    {
         // verify the descriptor matches the role hint and type
         verifyComponentDescriptor( componentDescriptor );
 
@@ -179,21 +238,9 @@ public class DefaultComponentRegistry implements ComponentRegistry
         }
 
         // Create the ComponentManager
-        ComponentManager<T> componentManager = componentManagerFactory.createComponentManager( container,
+        return componentManagerFactory.createComponentManager( container,
             lifecycleHandler,
             componentDescriptor );
-
-        // Add componentManager to indexe
-        synchronized ( index )
-        {
-            index.add( componentDescriptor.getRealm(),
-                componentDescriptor.getRoleClass(),
-                componentDescriptor.getRoleHint(),
-                componentManager);
-            componentManagersByComponentDescriptor.put(componentDescriptor, componentManager);
-        }
-
-        fireComponentDescriptorAdded( componentDescriptor );
     }
 
     public <T> ComponentDescriptor<T> getComponentDescriptor( Class<T> type, String roleHint )
@@ -283,6 +330,72 @@ public class DefaultComponentRegistry implements ComponentRegistry
         return getComponent( componentManager );
     }
 
+    public <T> T lookupStarting( ComponentDescriptor<T> componentDescriptor ) throws ComponentLookupException
+    {
+        ComponentManager<T> componentManager = (ComponentManager<T>) componentManagersByComponentDescriptor.get( componentDescriptor );
+        if ( componentManager == null )
+        {
+            throw new ComponentLookupException( "Component descriptor is not registered with PlexusContainer", componentDescriptor );
+        }
+        return getComponent( componentManager, false );
+    }
+
+    public void awaitStarted( Object component ) throws ComponentLookupException
+    {
+        ComponentManager<?> componentManager = componentManagersByComponent.get( component );
+        if ( componentManager == null )
+        {
+            return;
+        }
+
+        try
+        {
+            componentManager.awaitStarted( component );
+        }
+        catch ( ComponentLifecycleException e )
+        {
+            throw new ComponentLookupException( e.getMessage(), componentManager.getComponentDescriptor(), e.getCause() );
+        }
+    }
+
+    public <T> ComponentHandle<T> resolve( Class<T> type, String roleHint ) throws ComponentLookupException
+    {
+        // verify arguments
+        if ( type == null )
+        {
+            throw new NullPointerException( "type is null" );
+        }
+        if ( roleHint == null )
+        {
+            roleHint = PlexusConstants.PLEXUS_DEFAULT_HINT;
+        }
+
+        ComponentManager<T> componentManager = (ComponentManager<T>) index.get( type, roleHint );
+        if ( componentManager == null )
+        {
+            throw new ComponentLookupException( "Component descriptor cannot be found", type, roleHint );
+        }
+
+        // all handles for a component manager are equivalent, so share a single handle
+        DefaultComponentHandle<T> componentHandle = (DefaultComponentHandle<T>) componentHandles.get( componentManager );
+        if ( componentHandle == null )
+        {
+            componentHandle = new DefaultComponentHandle<T>( componentManager );
+            DefaultComponentHandle<T> existing =
+                (DefaultComponentHandle<T>) componentHandles.putIfAbsent( componentManager, componentHandle );
+            if ( existing != null )
+            {
+                componentHandle = existing;
+            }
+            else if ( componentManagersByComponentDescriptor.get( componentManager.getComponentDescriptor() ) != componentManager )
+            {
+                // component manager was removed while we were creating the handle
+                invalidateComponentHandle( componentManager );
+            }
+        }
+        return componentHandle;
+    }
+
     public <T> Map<String, T> lookupMap( Class<T> type, List<String> roleHints )
         throws ComponentLookupException
     {
@@ -360,17 +473,12 @@ public class DefaultComponentRegistry implements ComponentRegistry
         List<String> roleHints = listener.getRoleHints();
         synchronized ( this )
         {
-            if (roleHints == null )
+            RoleListeners roleListeners = listeners.get( type );
+            if ( roleListeners == null )
             {
-                listeners.put(new Pair<Class<?>, String>(type, null), listener);
-            }
-            else
-            {
-                for ( String roleHint : roleHints )
-                {
-                    listeners.put(new Pair<Class<?>, String>(type, roleHint), listener);
-                }
+                roleListeners = RoleListeners.EMPTY;
             }
+            listeners.put( type, roleListeners.add( listener, roleHints ) );
         }
 
         // if no hints provided, get all valid hints for this role
@@ -398,36 +506,50 @@ public class DefaultComponentRegistry implements ComponentRegistry
     {
         Class<?> type = listener.getType();
         List<String> roleHints = listener.getRoleHints();
+
+        RoleListeners roleListeners = listeners.get( type );
+        if ( roleListeners == null )
+        {
+            return;
+        }
+
         if (roleHints == null || roleHints.isEmpty())
         {
-            listeners.remove(new Pair<Class<?>, String>(type, null), listener);
+            roleHints = null;
+        }
+        roleListeners = roleListeners.remove( listener, roleHints );
+        if ( roleListeners.isEmpty() )
+        {
+            listeners.remove( type );
         }
         else
         {
-            for ( String roleHint : roleHints )
-            {
-                listeners.remove(new Pair<Class<?>, String>(type, roleHint), listener);
-            }
+            listeners.put( type, roleListeners );
         }
     }
 
-    private synchronized <T> List<ComponentDescriptorListener<T>> getListeners(ComponentDescriptor<T> descriptor)
+    private <T> void fireComponentDescriptorAdded( ComponentDescriptor<T> componentDescriptor )
     {
-        List<ComponentDescriptorListener<T>> allHintListeners =
-            cast( listeners.get( new Pair<Class<?>, String>( descriptor.getRoleClass(), null ) ) );
-        List<ComponentDescriptorListener<T>> specificHintListeners =
-            cast( listeners.get( new Pair<Class<?>, String>( descriptor.getRoleClass(), descriptor.getRoleHint() ) ) );
+        RoleListeners roleListeners = listeners.get( componentDescriptor.getRoleClass() );
+        if ( roleListeners == null )
+        {
+            return;
+        }
 
-        return newArrayList( concat(allHintListeners, specificHintListeners) );
+        fireComponentDescriptorAdded( roleListeners.allHintListeners, componentDescriptor );
+        fireComponentDescriptorAdded( roleListeners.getListeners( componentDescriptor.getRoleHint() ), componentDescriptor );
     }
 
-    private <T> void fireComponentDescriptorAdded( ComponentDescriptor<T> componentDescriptor )
+    @SuppressWarnings( "unchecked" )
+    private <T> void fireComponentDescriptorAdded( ComponentDescriptorListener<?>[] listeners,
+                                                   ComponentDescriptor<T> componentDescriptor )
     {
-        for ( ComponentDescriptorListener<T> listener : getListeners( componentDescriptor ))
+        for ( ComponentDescriptorListener<?> listener : listeners )
         {
             try
             {
-                listener.componentDescriptorAdded( componentDescriptor );
+                ComponentDescriptorListener<T> typedListener = (ComponentDescriptorListener<T>) listener;
+                typedListener.componentDescriptorAdded( componentDescriptor );
             }
             catch ( Throwable e )
             {
@@ -438,11 +560,26 @@ public class DefaultComponentRegistry implements ComponentRegistry
 
     private <T> void fireComponentDescriptorRemoved( ComponentDescriptor<T> componentDescriptor )
     {
-        for ( ComponentDescriptorListener<T> listener : getListeners( componentDescriptor ))
+        RoleListeners roleListeners = listeners.get( componentDescriptor.getRoleClass() );
+        if ( roleListeners == null )
+        {
+            return;
+        }
+
+        fireComponentDescriptorRemoved( roleListeners.allHintListeners, componentDescriptor );
+        fireComponentDescriptorRemoved( roleListeners.getListeners( componentDescriptor.getRoleHint() ), componentDescriptor );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private <T> void fireComponentDescriptorRemoved( ComponentDescriptorListener<?>[] listeners,
+                                                     ComponentDescriptor<T> componentDescriptor )
+    {
+        for ( ComponentDescriptorListener<?> listener : listeners )
         {
             try
             {
-                listener.componentDescriptorRemoved( componentDescriptor );
+                ComponentDescriptorListener<T> typedListener = (ComponentDescriptorListener<T>) listener;
+                typedListener.componentDescriptorRemoved( componentDescriptor );
             }
             catch ( Throwable e )
             {
@@ -471,6 +608,13 @@ public class DefaultComponentRegistry implements ComponentRegistry
 
         // release the component from the manager
         componentManager.release( component );
+
+        // the handle must not return the released instance
+        DefaultComponentHandle<?> componentHandle = componentHandles.get( componentManager );
+        if ( componentHandle != null )
+        {
+            componentHandle.released( component );
+        }
     }
 
     public void removeComponentRealm( ClassRealm classRealm ) throws PlexusContainerException
@@ -490,11 +634,26 @@ public class DefaultComponentRegistry implements ComponentRegistry
                 }
             }
 
+            for ( ComponentManager<?> componentManager : dispose )
+            {
+                invalidateComponentHandle( componentManager );
+            }
+
             // Call dispose callback outside of synchronized lock to avoid deadlocks
             for ( ComponentManager<?> componentManager : dispose )
             {
                 componentManager.dispose();
             }
+
+            // the instances still referenced elsewhere must not keep the disposed managers, and their realm, alive
+            for ( Object component : componentManagersByComponent.keys() )
+            {
+                ComponentManager<?> componentManager = componentManagersByComponent.get( component );
+                if ( componentManager != null && dispose.contains( componentManager ) )
+                {
+                    componentManagersByComponent.remove( component, componentManager );
+                }
+            }
         }
         catch ( ComponentLifecycleException e )
         {
@@ -513,6 +672,11 @@ public class DefaultComponentRegistry implements ComponentRegistry
     }
 
     private <T> T getComponent( ComponentManager<T> componentManager ) throws ComponentLookupException
+    {
+        return getComponent( componentManager, true );
+    }
+
+    private <T> T getComponent( ComponentManager<T> componentManager, boolean awaitStart ) throws ComponentLookupException
     {
         ComponentDescriptor<T> descriptor = componentManager.getComponentDescriptor();
 
@@ -524,6 +688,12 @@ public class DefaultComponentRegistry implements ComponentRegistry
 
             componentManagersByComponent.put( component, componentManager );
 
+            // a component with an asynchronous start may still be starting
+            if ( awaitStart )
+            {
+                componentManager.awaitStarted( component );
+            }
+
             return component;
         }
         catch ( Exception e )
@@ -549,6 +719,15 @@ public class DefaultComponentRegistry implements ComponentRegistry
         }
     }
 
+    private void invalidateComponentHandle( ComponentManager<?> componentManager )
+    {
+        DefaultComponentHandle<?> componentHandle = componentHandles.remove( componentManager );
+        if ( componentHandle != null )
+        {
+            componentHandle.invalidate();
+        }
+    }
+
     private <T> void verifyComponentDescriptor( ComponentDescriptor<T> descriptor ) throws ComponentRepositoryException
     {
         ClassLoader classLoader = descriptor.getRealm();
@@ -587,6 +766,220 @@ public class DefaultComponentRegistry implements ComponentRegistry
         }
     }
 
+    /**
+     * Handle bound to a single component manager.  Singleton instances are remembered by the handle, so once the
+     * singleton has been created get() is a volatile read.  The remembered instance is forgotten when it is released
+     * and the handle is invalidated when the component manager is removed from the registry.
+     */
+    private class DefaultComponentHandle<T> implements ComponentHandle<T>
+    {
+        private final ComponentDescriptor<T> descriptor;
+        private final boolean singleton;
+
+        private volatile ComponentManager<T> componentManager;
+        private volatile T instance;
+
+        // incremented every time the remembered instance is forgotten; guarded by this
+        private long releaseCount;
+
+        private DefaultComponentHandle( ComponentManager<T> componentManager )
+        {
+            this.componentManager = componentManager;
+            this.descriptor = componentManager.getComponentDescriptor();
+            this.singleton = componentManager instanceof SingletonComponentManager ||
+                componentManager instanceof StaticComponentManager;
+        }
+
+        public T get() throws ComponentLookupException
+        {
+            T instance = this.instance;
+            if ( instance != null )
+            {
+                return instance;
+            }
+
+            ComponentManager<T> componentManager = this.componentManager;
+            if ( componentManager == null )
+            {
+                throw new ComponentLookupException( "Component has been removed from the container", descriptor );
+            }
+
+            long releaseCount;
+            synchronized ( this )
+            {
+                releaseCount = this.releaseCount;
+            }
+
+            instance = getComponent( componentManager );
+
+            if ( singleton )
+            {
+                synchronized ( this )
+                {
+                    // do not remember an instance that was released or invalidated while we were getting it
+                    if ( releaseCount == this.releaseCount && this.componentManager != null )
+                    {
+                        this.instance = instance;
+                    }
+                }
+            }
+            return instance;
+        }
+
+        public ComponentDescriptor<T> getComponentDescriptor()
+        {
+            return descriptor;
+        }
+
+        public boolean isValid()
+        {
+            return componentManager != null;
+        }
+
+        private synchronized void released( Object component )
+        {
+            releaseCount++;
+            instance = null;
+        }
+
+        private synchronized void invalidate()
+        {
+            releaseCount++;
+            componentManager = null;
+            instance = null;
+        }
+
+        public String toString()
+        {
+            return "ComponentHandle[" + descriptor.getHumanReadableKey() + "]";
+        }
+    }
+
+    /**
+     * The listeners registered for a single role.  Instances are immutable; modifications return a copy.
+     */
+    private static final class RoleListeners
+    {
+        private static final ComponentDescriptorListener<?>[] NO_LISTENERS = new ComponentDescriptorListener<?>[0];
+
+        private static final RoleListeners EMPTY =
+            new RoleListeners( NO_LISTENERS, Collections.<String, ComponentDescriptorListener<?>[]>emptyMap() );
+
+        /**
+         * Listeners for all role hints of the role
+         */
+        private final ComponentDescriptorListener<?>[] allHintListeners;
+
+        /**
+         * RoleHint -> Listeners for the role hint
+         */
+        private final Map<String, ComponentDescriptorListener<?>[]> hintListeners;
+
+        private RoleListeners( ComponentDescriptorListener<?>[] allHintListeners,
+                               Map<String, ComponentDescriptorListener<?>[]> hintListeners )
+        {
+            this.allHintListeners = allHintListeners;
+            this.hintListeners = hintListeners;
+        }
+
+        private ComponentDescriptorListener<?>[] getListeners( String roleHint )
+        {
+            ComponentDescriptorListener<?>[] listeners = hintListeners.get( roleHint );
+            return listeners != null ? listeners : NO_LISTENERS;
+        }
+
+        private boolean isEmpty()
+        {
+            return allHintListeners.length == 0 && hintListeners.isEmpty();
+        }
+
+        /**
+         * Returns a copy with the listener added for the specified role hints, or for all role hints if the role
+         * hints are null.
+         */
+        private RoleListeners add( ComponentDescriptorListener<?> listener, List<String> roleHints )
+        {
+            if ( roleHints == null )
+            {
+                return new RoleListeners( append( allHintListeners, listener ), hintListeners );
+            }
+
+            Map<String, ComponentDescriptorListener<?>[]> newHintListeners =
+                new LinkedHashMap<String, ComponentDescriptorListener<?>[]>( hintListeners );
+            for ( String roleHint : roleHints )
+            {
+                ComponentDescriptorListener<?>[] listeners = newHintListeners.get( roleHint );
+                newHintListeners.put( roleHint, append( listeners != null ? listeners : NO_LISTENERS, listener ) );
+            }
+            return new RoleListeners( allHintListeners, newHintListeners );
+        }
+
+        /**
+         * Returns a copy with the listener removed from the specified role hints, or from all role hints if the
+         * role hints are null.
+         */
+        private RoleListeners remove( ComponentDescriptorListener<?> listener, List<String> roleHints )
+        {
+            if ( roleHints == null )
+            {
+                return new RoleListeners( remove( allHintListeners, listener ), hintListeners );
+            }
+
+            Map<String, ComponentDescriptorListener<?>[]> newHintListeners =
+                new LinkedHashMap<String, ComponentDescriptorListener<?>[]>( hintListeners );
+            for ( String roleHint : roleHints )
+            {
+                ComponentDescriptorListener<?>[] listeners = newHintListeners.get( roleHint );
+                if ( listeners != null )
+                {
+                    listeners = remove( listeners, listener );
+                    if ( listeners.length == 0 )
+                    {
+                        newHintListeners.remove( roleHint );
+                    }
+                    else
+                    {
+                        newHintListeners.put( roleHint, listeners );
+                    }
+                }
+            }
+            return new RoleListeners( allHintListeners, newHintListeners );
+        }
+
+        private static ComponentDescriptorListener<?>[] append( ComponentDescriptorListener<?>[] listeners,
+                                                                ComponentDescriptorListener<?> listener )
+        {
+            ComponentDescriptorListener<?>[] newListeners = new ComponentDescriptorListener<?>[listeners.length + 1];
+            System.arraycopy( listeners, 0, newListeners, 0, listeners.length );
+            newListeners[listeners.length] = listener;
+            return newListeners;
+        }
+
+        /**
+         * Removes the first occurrence of the listener, like List.remove(Object) did.
+         */
+        private static ComponentDescriptorListener<?>[] remove( ComponentDescriptorListener<?>[] listeners,
+                                                                ComponentDescriptorListener<?> listener )
+        {
+            for ( int i = 0; i < listeners.length; i++ )
+            {
+                if ( listener.equals( listeners[i] ) )
+                {
+                    if ( listeners.length == 1 )
+                    {
+                        return NO_LISTENERS;
+                    }
+                    ComponentDescriptorListener<?>[] newListeners =
+                        new ComponentDescriptorListener<?>[listeners.length - 1];
+                    System.arraycopy( listeners, 0, newListeners, 0, i );
+                    System.arraycopy( listeners, i + 1, newListeners, i, listeners.length - i - 1 );
+                    return newListeners;
+                }
+            }
+            return listeners;
+        }
+    }
+
     public static class Pair<L,R> {
         private final L left;
         private final R right;
@@ -4,6 +4,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.codehaus.plexus.classworlds.ClassWorld;
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
@@ -58,6 +59,18 @@ public class DefaultContainerConfiguration
     private List<Class> componentDiscoverers = new ArrayList<Class>();
     
     private List<Class> componentDiscoveryListeners = new ArrayList<Class>();
+
+    private Executor loadOnStartExecutor;
+
+    private boolean lazyRequirements;
+
+    private boolean precompiledInjection;
+
+    private Executor startExecutor;
+
+    private Executor disposeExecutor;
+
+    private long componentDisposeTimeout;
     
     public ContainerConfiguration setName( String name )
     {
@@ -329,5 +342,77 @@ public class DefaultContainerConfiguration
     public List<Class> getComponentDiscoveryListeners()
     {
         return componentDiscoveryListeners;
-    }    
+    }
+
+    public ContainerConfiguration setLoadOnStartExecutor( Executor loadOnStartExecutor )
+    {
+        this.loadOnStartExecutor = loadOnStartExecutor;
+
+        return this;
+    }
+
+    public Executor getLoadOnStartExecutor()
+    {
+        return loadOnStartExecutor;
+    }
+
+    public ContainerConfiguration setLazyRequirements( boolean lazyRequirements )
+    {
+        this.lazyRequirements = lazyRequirements;
+
+        return this;
+    }
+
+    public boolean isLazyRequirements()
+    {
+        return lazyRequirements;
+    }
+
+    public ContainerConfiguration setPrecompiledInjection( boolean precompiledInjection )
+    {
+        this.precompiledInjection = precompiledInjection;
+
+        return this;
+    }
+
+    public boolean isPrecompiledInjection()
+    {
+        return precompiledInjection;
+    }
+
+    public ContainerConfiguration setStartExecutor( Executor startExecutor )
+    {
+        this.startExecutor = startExecutor;
+
+        return this;
+    }
+
+    public Executor getStartExecutor()
+    {
+        return startExecutor;
+    }
+
+    public ContainerConfiguration setDisposeExecutor( Executor disposeExecutor )
+    {
+        this.disposeExecutor = disposeExecutor;
+
+        return this;
+    }
+
+    public Executor getDisposeExecutor()
+    {
+        return disposeExecutor;
+    }
+
+    public ContainerConfiguration setComponentDisposeTimeout( long componentDisposeTimeout )
+    {
+        this.componentDisposeTimeout = componentDisposeTimeout;
+
+        return this;
+    }
+
+    public long getComponentDisposeTimeout()
+    {
+        return componentDisposeTimeout;
+    }
 }
@@ -24,14 +24,27 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 
 import org.codehaus.plexus.classworlds.ClassWorld;
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
 import org.codehaus.plexus.classworlds.realm.DuplicateRealmException;
 import org.codehaus.plexus.classworlds.realm.NoSuchRealmException;
+import org.codehaus.plexus.component.ComponentHandle;
+import org.codehaus.plexus.component.ComponentScopes;
+import org.codehaus.plexus.component.ScopeHandle;
+import org.codehaus.plexus.component.WeakIdentityMap;
+import org.codehaus.plexus.component.composition.CompositionException;
 import org.codehaus.plexus.component.discovery.ComponentDiscoverer;
 import org.codehaus.plexus.component.discovery.ComponentDiscovererManager;
 import org.codehaus.plexus.component.discovery.ComponentDiscoveryEvent;
@@ -96,6 +109,12 @@ public class DefaultPlexusContainer
 
     private ComponentRegistry componentRegistry;
 
+    private boolean lazyRequirements;
+
+    private boolean precompiledInjection;
+
+    private Executor startExecutor;
+
     /**
      * Simple index (registry) of ComponentDiscovers and ComponentDiscoveryListener.
      */
@@ -123,6 +142,27 @@ public class DefaultPlexusContainer
     // TODO: Is there a more threadpool-friendly way to do this?
     private ThreadLocal<ClassRealm> lookupRealm = new ThreadLocal<ClassRealm>();
 
+    private final ComponentScopes componentScopes = new ComponentScopes();
+
+    /**
+     * Guarded by this
+     */
+    private ScheduledThreadPoolExecutor evictionExecutor;
+
+    /**
+     * Role classes loaded by name from class realms for the String based lookup methods.  A role that could not be
+     * loaded from a realm is recorded as RoleNotLoadable so the failed load is not repeated on every lookup, even
+     * when the role is then loaded by another path, until the realm is removed or set as lookup realm again.
+     * ClassRealm -> Role -> Class
+     *
+     * Realms and classes are weakly referenced, so a realm disposed without being removed from the container is not
+     * kept alive by the cache.  A class stays loadable for as long as its realm is alive.
+     */
+    private final WeakIdentityMap<ClassRealm, ConcurrentMap<String, WeakReference<Class<?>>>> roleClassesByRealm =
+        new WeakIdentityMap<ClassRealm, ConcurrentMap<String, WeakReference<Class<?>>>>();
+
+    private static final WeakReference<Class<?>> ROLE_NOT_LOADABLE = new WeakReference<Class<?>>( RoleNotLoadable.class );
+
     public void addComponent( Object component, String role )
         throws ComponentRepositoryException
     {
@@ -154,6 +194,12 @@ public class DefaultPlexusContainer
 
         lookupRealm.set( realm );
 
+        // the realm may have been given new urls or imports since it was last used for lookups
+        if ( realm != null )
+        {
+            forgetNotLoadableRoles( realm );
+        }
+
         return oldRealm;
     }
 
@@ -202,6 +248,12 @@ public class DefaultPlexusContainer
     {
         configurationSource = c.getConfigurationSource();
 
+        lazyRequirements = c.isLazyRequirements();
+
+        precompiledInjection = c.isPrecompiledInjection();
+
+        startExecutor = c.getStartExecutor();
+
         // ----------------------------------------------------------------------------
         // ClassWorld
         // ----------------------------------------------------------------------------
@@ -326,50 +378,129 @@ public class DefaultPlexusContainer
     {
         if ( hint == null ) hint = PLEXUS_DEFAULT_HINT;
 
-        try
+        ClassRealm realm = getLookupRealm();
+        if ( realm != null )
         {
-            ClassRealm realm = getLookupRealm();
+            Class<?> roleClass = loadRoleClass( realm, role );
+            if ( roleClass != null )
+            {
+                return roleClass;
+            }
+        }
 
-            if ( realm != null )
+        Class<?> roleClass = null;
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if ( loader instanceof ClassRealm )
+        {
+            if ( loader != realm )
             {
-                return realm.loadClass( role );
+                roleClass = loadRoleClass( (ClassRealm) loader, role );
             }
         }
-        catch ( Throwable e )
+        else
         {
+            try
+            {
+                if ( loader != null )
+                {
+                    roleClass = loader.loadClass( role );
+                }
+            }
+            catch ( Throwable e )
+            {
+            }
         }
 
-        try
+        if ( roleClass == null )
         {
-            ClassLoader loader = Thread.currentThread().getContextClassLoader();
-            if ( loader != null )
+            try
+            {
+                ComponentDescriptor<?> cd = componentRegistry.getComponentDescriptor( Object.class, hint );
+                if ( cd != null )
+                {
+                    ClassLoader cdLoader = cd.getImplementationClass().getClassLoader();
+                    if ( cdLoader != null )
+                    {
+                        roleClass = cdLoader.loadClass( role );
+                    }
+                }
+            }
+            catch ( Throwable ignored )
             {
-                return loader.loadClass( role );
             }
         }
-        catch ( Throwable e )
+
+        if ( roleClass == null )
         {
+            return Object.class;
         }
+        return roleClass;
+    }
 
-        try
+    /**
+     * Loads the role class from the realm, or returns null if the realm can not load the role.  The result of the
+     * load is cached until the realm is removed or set as lookup realm again.
+     */
+    private Class<?> loadRoleClass( ClassRealm realm, String role )
+    {
+        ConcurrentMap<String, WeakReference<Class<?>>> roleClasses = roleClassesByRealm.get( realm );
+        if ( roleClasses == null )
         {
-            ComponentDescriptor<?> cd = componentRegistry.getComponentDescriptor( Object.class, hint );
-            if ( cd != null )
+            // racing threads create equivalent maps, so the last one published wins
+            roleClasses = new ConcurrentHashMap<String, WeakReference<Class<?>>>();
+            roleClassesByRealm.put( realm, roleClasses );
+        }
+
+        WeakReference<Class<?>> reference = roleClasses.get( role );
+        Class<?> roleClass = reference == null ? null : reference.get();
+        if ( roleClass == null )
+        {
+            try
             {
-                ClassLoader loader = cd.getImplementationClass().getClassLoader();
-                if ( loader != null )
-                {
-                    return loader.loadClass( role );
-                }
+                roleClass = realm.loadClass( role );
+                roleClasses.put( role, new WeakReference<Class<?>>( roleClass ) );
+            }
+            catch ( Throwable e )
+            {
+                roleClass = RoleNotLoadable.class;
+                roleClasses.put( role, ROLE_NOT_LOADABLE );
             }
         }
-        catch ( Throwable ignored )
+
+        if ( roleClass == RoleNotLoadable.class )
         {
+            return null;
         }
+        return roleClass;
+    }
 
-        return Object.class;
+    private void forgetNotLoadableRoles( ClassRealm realm )
+    {
+        ConcurrentMap<String, WeakReference<Class<?>>> roleClasses = roleClassesByRealm.get( realm );
+        if ( roleClasses != null )
+        {
+            roleClasses.values().removeAll( Collections.singleton( ROLE_NOT_LOADABLE ) );
+        }
     }
-    
+
+    /**
+     * Is the result of loading the role from the realm cached?
+     * @return the cached role class, RoleNotLoadable if the role could not be loaded, or null if nothing is cached
+     */
+    Class<?> getCachedRoleClass( ClassRealm realm, String role )
+    {
+        ConcurrentMap<String, WeakReference<Class<?>>> roleClasses = roleClassesByRealm.get( realm );
+        WeakReference<Class<?>> reference = roleClasses == null ? null : roleClasses.get( role );
+        return reference == null ? null : reference.get();
+    }
+
+    /**
+     * Marker recorded in the role class cache for roles a realm could not load.
+     */
+    static final class RoleNotLoadable
+    {
+    }
+
     private Class<?> getRoleClass( String role )
     {
         return getInterfaceClass( role, null );        
@@ -411,6 +542,26 @@ public class DefaultPlexusContainer
         return componentRegistry.lookup( descriptor );
     }
 
+    public <T> ComponentHandle<T> resolve( Class<T> type ) throws ComponentLookupException
+    {
+        return componentRegistry.resolve( type, PLEXUS_DEFAULT_HINT );
+    }
+
+    public <T> ComponentHandle<T> resolve( Class<T> type, String roleHint ) throws ComponentLookupException
+    {
+        return componentRegistry.resolve( type, roleHint );
+    }
+
+    public ScopeHandle enterScope( String name )
+    {
+        return componentScopes.enterScope( name );
+    }
+
+    public void exitScope() throws ComponentLifecycleException
+    {
+        componentScopes.exitScope();
+    }
+
     public List<Object> lookupList( String role ) throws ComponentLookupException
     {
         return cast(componentRegistry.lookupList( getRoleClass( role ), null));
@@ -579,34 +730,14 @@ public class DefaultPlexusContainer
 
             try
             {
-                for ( PlexusConfiguration loadOnStartComponent : loadOnStartComponents )
+                Executor executor = containerConfiguration.getLoadOnStartExecutor();
+                if ( executor != null )
                 {
-                    String role = loadOnStartComponent.getChild( "role" ).getValue( null );
-
-                    String roleHint = loadOnStartComponent.getChild( "role-hint" ).getValue( null );
-
-                    if ( role == null )
-                    {
-                        throw new PlexusContainerException( "Missing 'role' element from load-on-start." );
-                    }
-
-                    if ( roleHint == null )
-                    {
-                        roleHint = PlexusConstants.PLEXUS_DEFAULT_HINT;
-                    }
-
-                    if ( roleHint.equals( "*" ) )
-                    {
-                        getLogger().info( "Loading on start all components with [role]: " + "[" + role + "]" );
-
-                        lookupList( role );
-                    }
-                    else
-                    {
-                        getLogger().info( "Loading on start [role,roleHint]: " + "[" + role + "," + roleHint + "]" );
-
-                        lookup( role, roleHint );
-                    }
+                    loadOnStartInParallel( loadOnStartComponents, executor );
+                }
+                else
+                {
+                    loadOnStart( loadOnStartComponents );
                 }
             }
             catch ( ComponentLookupException e )
@@ -637,6 +768,125 @@ public class DefaultPlexusContainer
         }        
     }
 
+    private void loadOnStart( PlexusConfiguration[] loadOnStartComponents )
+        throws PlexusContainerException, ComponentLookupException
+    {
+        // components with an asynchronous start are waited for once all load-on-start components have been created
+        List<Object> starting = new ArrayList<Object>();
+
+        for ( PlexusConfiguration loadOnStartComponent : loadOnStartComponents )
+        {
+            String role = getLoadOnStartRole( loadOnStartComponent );
+
+            String roleHint = getLoadOnStartRoleHint( loadOnStartComponent );
+
+            if ( roleHint.equals( "*" ) )
+            {
+                getLogger().info( "Loading on start all components with [role]: " + "[" + role + "]" );
+
+                lookupList( role );
+            }
+            else
+            {
+                getLogger().info( "Loading on start [role,roleHint]: " + "[" + role + "," + roleHint + "]" );
+
+                ComponentDescriptor<?> descriptor = getComponentDescriptor( role, roleHint );
+                if ( descriptor != null && descriptor.isAsyncStart() )
+                {
+                    starting.add( componentRegistry.lookupStarting( descriptor ) );
+                }
+                else
+                {
+                    lookup( role, roleHint );
+                }
+            }
+        }
+
+        for ( Object component : starting )
+        {
+            componentRegistry.awaitStarted( component );
+        }
+    }
+
+    /**
+     * Creates the load-on-start components on the executor, in the order of their requirements.  Falls back to
+     * creating them one at a time if their requirements are cyclic.
+     */
+    private void loadOnStartInParallel( PlexusConfiguration[] loadOnStartComponents, Executor executor )
+        throws PlexusContainerException, ComponentLookupException
+    {
+        LoadOnStartWarmUp warmUp = new LoadOnStartWarmUp( this, executor );
+
+        try
+        {
+            for ( PlexusConfiguration loadOnStartComponent : loadOnStartComponents )
+            {
+                String role = getLoadOnStartRole( loadOnStartComponent );
+
+                String roleHint = getLoadOnStartRoleHint( loadOnStartComponent );
+
+                if ( roleHint.equals( "*" ) )
+                {
+                    getLogger().info( "Loading on start all components with [role]: " + "[" + role + "]" );
+
+                    for ( ComponentDescriptor<?> descriptor : getComponentDescriptorList( role ) )
+                    {
+                        warmUp.addLoadOnStart( descriptor );
+                    }
+                }
+                else
+                {
+                    getLogger().info( "Loading on start [role,roleHint]: " + "[" + role + "," + roleHint + "]" );
+
+                    ComponentDescriptor<?> descriptor = getComponentDescriptor( role, roleHint );
+                    if ( descriptor == null )
+                    {
+                        // reports the missing component
+                        lookup( role, roleHint );
+                    }
+                    else
+                    {
+                        warmUp.addLoadOnStart( descriptor );
+                    }
+                }
+            }
+        }
+        catch ( CompositionException e )
+        {
+            getLogger().warn( "Cannot load on start in parallel: " + e.getMessage() );
+
+            loadOnStart( loadOnStartComponents );
+            return;
+        }
+
+        warmUp.run();
+    }
+
+    private static String getLoadOnStartRole( PlexusConfiguration loadOnStartComponent )
+        throws PlexusContainerException
+    {
+        String role = loadOnStartComponent.getChild( "role" ).getValue( null );
+
+        if ( role == null )
+        {
+            throw new PlexusContainerException( "Missing 'role' element from load-on-start." );
+        }
+
+        return role;
+    }
+
+    private static String getLoadOnStartRoleHint( PlexusConfiguration loadOnStartComponent )
+    {
+        String roleHint = loadOnStartComponent.getChild( "role-hint" ).getValue( null );
+
+        if ( roleHint == null )
+        {
+            roleHint = PlexusConstants.PLEXUS_DEFAULT_HINT;
+        }
+
+        return roleHint;
+    }
+
     protected void initializePhases( ContainerConfiguration containerConfiguration )
         throws PlexusContainerException
     {
@@ -690,6 +940,17 @@ public class DefaultPlexusContainer
         finally
         {
             lookupRealm.set( null );
+
+            roleClassesByRealm.clear();
+
+            synchronized ( this )
+            {
+                if ( evictionExecutor != null )
+                {
+                    evictionExecutor.shutdownNow();
+                    evictionExecutor = null;
+                }
+            }
         }
     }
 
@@ -707,6 +968,45 @@ public class DefaultPlexusContainer
         return classWorld;
     }
 
+    public boolean isLazyRequirements()
+    {
+        return lazyRequirements;
+    }
+
+    public boolean isPrecompiledInjection()
+    {
+        return precompiledInjection;
+    }
+
+    public Executor getStartExecutor()
+    {
+        return startExecutor;
+    }
+
+    public ComponentScopes getComponentScopes()
+    {
+        return componentScopes;
+    }
+
+    public synchronized ScheduledExecutorService getEvictionExecutor()
+    {
+        if ( evictionExecutor == null )
+        {
+            evictionExecutor = new ScheduledThreadPoolExecutor( 1, new ThreadFactory()
+            {
+                public Thread newThread( Runnable runnable )
+                {
+                    Thread thread = new Thread( runnable, "plexus-singleton-evictor" );
+                    thread.setDaemon( true );
+                    // do not keep the class loader of the thread that happened to create the executor alive
+                    thread.setContextClassLoader( null );
+                    return thread;
+                }
+            } );
+        }
+        return evictionExecutor;
+    }
+
     public void setClassWorld( ClassWorld classWorld )
     {
         this.classWorld = classWorld;
@@ -878,6 +1178,8 @@ public class DefaultPlexusContainer
 
         componentRegistry.removeComponentRealm( realm );
 
+        roleClassesByRealm.remove( realm );
+
         ClassRealm lookupRealm = getLookupRealm();
         if ( ( lookupRealm != null ) && lookupRealm.getId().equals( realm.getId() ) )
         {
@@ -976,17 +1278,26 @@ public class DefaultPlexusContainer
                 
                 for( ComponentDescriptor<?> componentDescriptor : componentSetDescriptor.getComponents() )
                 {
-                    addComponentDescriptor( componentDescriptor );                    
-                    
+                    if ( componentDescriptor.getRealm() == null )
+                    {
+                        componentDescriptor.setRealm( this.containerRealm );
+                    }
+
                     discoveredComponentDescriptors.add( componentDescriptor );
                 }
-                
-                // Fire the event
-                ComponentDiscoveryEvent event = new ComponentDiscoveryEvent( componentSetDescriptor );
-
-                componentDiscovererManager.fireComponentDiscoveryEvent( event );                
             }
         }
+
+        // register all of the discovered components in one batch
+        componentRegistry.addComponentDescriptors( discoveredComponentDescriptors );
+
+        for ( ComponentSetDescriptor componentSetDescriptor : componentSetDescriptors )
+        {
+            // Fire the event
+            ComponentDiscoveryEvent event = new ComponentDiscoveryEvent( componentSetDescriptor );
+
+            componentDiscovererManager.fireComponentDiscoveryEvent( event );
+        }
                 
         return discoveredComponentDescriptors;
     }
@@ -0,0 +1,313 @@
+package org.codehaus.plexus;
+
+/*
+ * Copyright 2001-2006 Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.codehaus.plexus.component.composition.CompositionException;
+import org.codehaus.plexus.component.composition.CompositionResolver;
+import org.codehaus.plexus.component.composition.DefaultCompositionResolver;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.ComponentRequirement;
+import org.codehaus.plexus.component.repository.ComponentRequirementList;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Creates the load-on-start components on an executor.  The requirements of the components, and transitively the
+ * singletons they require, are added to a {@link DefaultCompositionResolver}, and each component is created only
+ * after all of the components it requires have been created.  Components that do not depend on each other are
+ * created concurrently.
+ *
+ * Singletons that are only required by a load-on-start component are created ahead of it, so their construction is
+ * also spread over the executor.  Other requirements are created when the component requiring them is created, as
+ * they would be by a serial lookup.
+ */
+final class LoadOnStartWarmUp
+{
+    private static final String SINGLETON = "singleton";
+
+    private final PlexusContainer container;
+
+    private final Executor executor;
+
+    private final CompositionResolver compositionResolver = new DefaultCompositionResolver();
+
+    /**
+     * role:hint -> Component; in the order the components were added
+     */
+    private final Map<String, Component> components = new LinkedHashMap<String, Component>();
+
+    LoadOnStartWarmUp( PlexusContainer container, Executor executor )
+    {
+        this.container = container;
+        this.executor = executor;
+    }
+
+    /**
+     * Adds a load-on-start component, and the components it requires.
+     * @throws CompositionException if the requirements of the component are cyclic
+     */
+    public void addLoadOnStart( ComponentDescriptor<?> descriptor )
+        throws CompositionException
+    {
+        add( descriptor ).loadOnStart = true;
+    }
+
+    private Component add( ComponentDescriptor<?> descriptor )
+        throws CompositionException
+    {
+        String key = getKey( descriptor.getRole(), descriptor.getRoleHint() );
+        Component component = components.get( key );
+        if ( component != null )
+        {
+            return component;
+        }
+
+        component = new Component( key, descriptor );
+        components.put( key, component );
+
+        compositionResolver.addComponentDescriptor( descriptor );
+
+        for ( ComponentRequirement requirement : descriptor.getRequirements() )
+        {
+            List<String> roleHints;
+            if ( requirement instanceof ComponentRequirementList )
+            {
+                roleHints = ( (ComponentRequirementList) requirement ).getRoleHints();
+            }
+            else
+            {
+                roleHints = Collections.singletonList( requirement.getRoleHint() );
+            }
+
+            if ( roleHints == null )
+            {
+                continue;
+            }
+
+            for ( String roleHint : roleHints )
+            {
+                ComponentDescriptor<?> required = container.getComponentDescriptor( requirement.getRole(), roleHint );
+
+                // missing requirements are reported when the component requiring them is created
+                if ( required != null )
+                {
+                    add( required );
+                }
+            }
+        }
+
+        return component;
+    }
+
+    /**
+     * Creates the load-on-start components, and waits until all of them have been created.
+     * @throws ComponentLookupException if a component could not be created; the components that were already being
+     * created are waited for, but no new components are created
+     */
+    public void run()
+        throws ComponentLookupException
+    {
+        // link each component to the components it requires
+        for ( Component component : components.values() )
+        {
+            ComponentDescriptor<?> descriptor = component.descriptor;
+            List<?> requirements = compositionResolver.getRequirements( descriptor.getRole(), descriptor.getRoleHint() );
+            for ( Object requirementKey : requirements )
+            {
+                Component required = components.get( requirementKey );
+                if ( required != null && required != component && required.dependents.add( component ) )
+                {
+                    component.pending++;
+                }
+            }
+        }
+
+        BlockingQueue<Component> created = new LinkedBlockingQueue<Component>();
+        ClassRealm lookupRealm = container.getLookupRealm();
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+        int running = 0;
+        for ( Component component : components.values() )
+        {
+            if ( component.pending == 0 )
+            {
+                execute( component.newTask( lookupRealm, contextClassLoader, created ) );
+                running++;
+            }
+        }
+
+        Throwable failure = null;
+        boolean interrupted = false;
+        while ( running > 0 )
+        {
+            Component component;
+            try
+            {
+                component = created.take();
+            }
+            catch ( InterruptedException e )
+            {
+                // the components being created still have to be waited for
+                interrupted = true;
+                continue;
+            }
+            running--;
+
+            if ( component.failure != null )
+            {
+                if ( failure == null )
+                {
+                    failure = component.failure;
+                }
+                continue;
+            }
+
+            if ( failure != null )
+            {
+                continue;
+            }
+
+            for ( Component dependent : component.dependents )
+            {
+                if ( --dependent.pending == 0 )
+                {
+                    execute( dependent.newTask( lookupRealm, contextClassLoader, created ) );
+                    running++;
+                }
+            }
+        }
+
+        if ( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if ( failure instanceof ComponentLookupException )
+        {
+            throw (ComponentLookupException) failure;
+        }
+        if ( failure instanceof RuntimeException )
+        {
+            throw (RuntimeException) failure;
+        }
+        if ( failure instanceof Error )
+        {
+            throw (Error) failure;
+        }
+    }
+
+    private void execute( Runnable task )
+    {
+        try
+        {
+            executor.execute( task );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            // a saturated or shut down executor must not leave the container half started
+            task.run();
+        }
+    }
+
+    private static String getKey( String role, String roleHint )
+    {
+        return role + CompositionResolver.SEPARATOR_CHAR + roleHint;
+    }
+
+    /**
+     * A node of the requirement graph; only accessed by the thread running the warm-up, except for failure which is
+     * published through the queue of created components
+     */
+    private final class Component
+    {
+        private final String key;
+
+        private final ComponentDescriptor<?> descriptor;
+
+        private final Set<Component> dependents = new HashSet<Component>();
+
+        private boolean loadOnStart;
+
+        private int pending;
+
+        private Throwable failure;
+
+        private Component( String key, ComponentDescriptor<?> descriptor )
+        {
+            this.key = key;
+            this.descriptor = descriptor;
+        }
+
+        private boolean isCreatedAhead()
+        {
+            String instantiationStrategy = descriptor.getInstantiationStrategy();
+            return loadOnStart || instantiationStrategy == null || SINGLETON.equals( instantiationStrategy );
+        }
+
+        /**
+         * Creates the task creating the component with the lookup realm and context class loader of the thread
+         * running the warm-up, as if the component was looked up by that thread.
+         */
+        private Runnable newTask( final ClassRealm lookupRealm, final ClassLoader contextClassLoader,
+                                  final BlockingQueue<Component> created )
+        {
+            return new Runnable()
+            {
+                public void run()
+                {
+                    Thread thread = Thread.currentThread();
+                    ClassLoader prevCl = thread.getContextClassLoader();
+                    thread.setContextClassLoader( contextClassLoader );
+                    ClassRealm prevRealm = container.setLookupRealm( lookupRealm );
+                    try
+                    {
+                        if ( isCreatedAhead() )
+                        {
+                            container.lookup( descriptor );
+                        }
+                    }
+                    catch ( Throwable e )
+                    {
+                        failure = e;
+                    }
+                    finally
+                    {
+                        container.setLookupRealm( prevRealm );
+                        thread.setContextClassLoader( prevCl );
+                        created.add( Component.this );
+                    }
+                }
+            };
+        }
+
+        public String toString()
+        {
+            return key;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.codehaus.plexus;
 
 import org.codehaus.plexus.classworlds.ClassWorld;
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.codehaus.plexus.component.ComponentScopes;
 import org.codehaus.plexus.component.discovery.ComponentDiscovererManager;
 import org.codehaus.plexus.component.factory.ComponentFactoryManager;
 import org.codehaus.plexus.configuration.PlexusConfiguration;
@@ -25,6 +26,9 @@ import org.codehaus.plexus.configuration.source.ConfigurationSource;
 import org.codehaus.plexus.logging.Logger;
 import org.codehaus.plexus.logging.LoggerManager;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+
 /**
  * @author Jason van Zyl
  */
@@ -64,4 +68,40 @@ public interface MutablePlexusContainer
     ClassRealm getComponentRealm( String realmId );
 
     ClassWorld getClassWorld();
+
+    /**
+     * Are all requirements with an interface type resolved lazily?
+     *
+     * @return true if all requirements with an interface type are injected as proxies
+     */
+    boolean isLazyRequirements();
+
+    /**
+     * Are components created by precompiled injectors?
+     *
+     * @return true if the component managers use an InjectorComponentBuilder
+     */
+    boolean isPrecompiledInjection();
+
+    /**
+     * Gets the executor used to start the components with an asynchronous start.
+     *
+     * @return the executor, or null if all components are started on the thread creating them
+     */
+    Executor getStartExecutor();
+
+    /**
+     * Gets the scopes entered in this container.
+     *
+     * @return the scopes used by the "scoped" components of this container
+     */
+    ComponentScopes getComponentScopes();
+
+    /**
+     * Gets the executor checking the evictable singletons of this container for eviction.  The executor is created on
+     * first use, and shut down when the container is disposed.
+     *
+     * @return the eviction executor
+     */
+    ScheduledExecutorService getEvictionExecutor();
 }
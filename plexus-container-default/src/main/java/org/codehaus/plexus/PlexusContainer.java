@@ -17,6 +17,8 @@ package org.codehaus.plexus;
  */
 
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.codehaus.plexus.component.ComponentHandle;
+import org.codehaus.plexus.component.ScopeHandle;
 import org.codehaus.plexus.component.discovery.ComponentDiscoveryListener;
 import org.codehaus.plexus.component.repository.ComponentDescriptor;
 import org.codehaus.plexus.component.repository.ComponentDescriptorListener;
@@ -83,6 +85,41 @@ public interface PlexusContainer
     <T> T lookup( ComponentDescriptor<T> descriptor )
         throws ComponentLookupException;
 
+    /**
+     * Resolves a handle to the component with the given unique key or role.  The handle can be used to obtain the
+     * component repeatedly without looking it up again.
+     * @param type the unique type of the component within the container
+     * @return a handle to the Plexus component
+     */
+    <T> ComponentHandle<T> resolve( Class<T> type )
+        throws ComponentLookupException;
+
+    /**
+     * Resolves a handle to the component with the given unique role/role-hint combination.  The handle can be used
+     * to obtain the component repeatedly without looking it up again.
+     * @param type the non-unique type of the component
+     * @param roleHint a hint for the desired component implementation
+     * @return a handle to the Plexus component
+     */
+    <T> ComponentHandle<T> resolve( Class<T> type, String roleHint )
+        throws ComponentLookupException;
+
+    /**
+     * Enters a new scope on the current thread.  Components with the "scoped" instantiation strategy have one
+     * instance per scope, which is destroyed when the scope is exited.
+     * @param name the name of the scope
+     * @return a handle that can be used to exit the scope
+     */
+    ScopeHandle enterScope( String name );
+
+    /**
+     * Exits the innermost scope entered by the current thread, destroying the scoped component instances created
+     * in it.
+     * @throws IllegalStateException if the current thread has not entered a scope
+     */
+    void exitScope()
+        throws ComponentLifecycleException;
+
     /**
      * Looks up and returns a component object with the given unique role/role-hint combination.
      * @param type the non-unique type of the component
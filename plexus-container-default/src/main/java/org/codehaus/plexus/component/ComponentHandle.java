@@ -0,0 +1,53 @@
+package org.codehaus.plexus.component;
+
+/*
+ * Copyright 2001-2006 Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+
+/**
+ * A pre-resolved reference to a component.  A handle is bound to the component selected when the handle was
+ * resolved, so repeated calls to {@link #get()} skip the role and role hint lookup.
+ *
+ * A handle becomes invalid when its component descriptor is removed from the container, either because the
+ * component realm was removed or because the container was disposed.
+ *
+ * @see org.codehaus.plexus.PlexusContainer#resolve(Class, String)
+ */
+public interface ComponentHandle<T>
+{
+    /**
+     * Gets the component instance.  For singleton components this is the same instance on every call; for other
+     * instantiation strategies this behaves exactly like a lookup.
+     * @return the component instance; never null
+     * @throws ComponentLookupException if the handle is no longer valid or the component could not be created
+     */
+    T get()
+        throws ComponentLookupException;
+
+    /**
+     * Gets the descriptor of the component bound to this handle.
+     * @return the component descriptor; never null
+     */
+    ComponentDescriptor<T> getComponentDescriptor();
+
+    /**
+     * Is this handle still bound to a registered component?
+     * @return true if the component descriptor is still registered with the container; otherwise false
+     */
+    boolean isValid();
+}
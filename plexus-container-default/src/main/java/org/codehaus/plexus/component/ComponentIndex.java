@@ -3,14 +3,16 @@ package org.codehaus.plexus.component;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
+import com.google.common.collect.ReferenceMap;
+import static com.google.common.base.ReferenceType.STRONG;
+import static com.google.common.base.ReferenceType.WEAK;
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
 import static org.codehaus.plexus.PlexusConstants.PLEXUS_DEFAULT_HINT;
 
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -18,10 +20,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.Iterator;
 import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ComponentIndex<V>
 {
@@ -30,12 +33,62 @@ public class ComponentIndex<V>
      */
     private final boolean indexByAllTypes;
 
+    /**
+     * Dense ids assigned to role types.  Types are identified by name, so the same role loaded by different class
+     * loaders shares an id.  Ids are assigned by writers and are never reused.
+     * Type name -> Role id
+     */
+    private final ConcurrentMap<String, Integer> roleIds = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * Role id -> Type name; guarded by this
+     */
+    private final List<String> roleNames = new ArrayList<String>();
+
     /**
      * This is the actual index.
-     * ClassLoader -> Class -> RoleHint -> Values
+     * ClassLoader -> Role id -> RoleHint -> Values
+     *
+     * The index is a copy-on-write snapshot: readers simply read the volatile field and never lock, while writers
+     * (which are serialized on this object) build a new snapshot and publish it with a single write.  The maps and
+     * multimaps reachable from a published snapshot are never modified.
      */
-    private final Map<ClassLoader, SortedMap<Class<?>, Multimap<String, V>>> index =
-        new LinkedHashMap<ClassLoader, SortedMap<Class<?>, Multimap<String, V>>>();
+    private volatile Map<ClassLoader, RoleTable<V>> index = Collections.emptyMap();
+
+    /**
+     * Cache of the ids of all super types and interfaces of a type, used when indexing by all types.  The classes
+     * are weakly referenced and the ids do not reference the classes, so the cache does not keep class loaders alive.
+     * Type -> Role ids; guarded by this
+     */
+    private final Map<Class<?>, int[]> roleClosures = new ReferenceMap<Class<?>, int[]>( WEAK, STRONG );
+
+    /**
+     * Reverse index of the slots each value occupies, so values can be removed without searching the whole index.
+     * Value -> Slots; guarded by this
+     *
+     * A value added by a type and all of its super types occupies a single slot.
+     */
+    private final Map<V, List<Slot>> slots = new HashMap<V, List<Slot>>();
+
+    /**
+     * Cache of resolved lookups.
+     * Type name -> Lookup ClassLoader -> Resolution
+     *
+     * A resolution is the merged view of all values visible to a type from a lookup class loader.  When a value is
+     * added or removed, only the resolutions of the affected types whose class loader chain contains the modified
+     * class loader are discarded.
+     *
+     * Lookup class loaders are weakly referenced, by the cache and by the resolutions, so a class loader that is only
+     * used for lookups is not kept alive by the cache.  Types without cached resolutions are dropped.
+     */
+    private final ConcurrentMap<String, WeakIdentityMap<Object, Resolution<V>>> resolutions =
+        new ConcurrentHashMap<String, WeakIdentityMap<Object, Resolution<V>>>();
+
+    /**
+     * Key used in the resolution cache for lookups without a class loader, since ConcurrentHashMap does not support
+     * null keys.
+     */
+    private static final Object NULL_CLASS_LOADER = new Object();
 
     /**
      * Creates a component index that indexes by all super types and interfaces of supplied type.
@@ -75,7 +128,7 @@ public class ComponentIndex<V>
      * @param roleHint the roleHint associated with the value, or null for the default roleHint
      * @return the value associated with the type and roleHint, or null
      */
-    public synchronized V get( Class<?> type, String roleHint )
+    public V get( Class<?> type, String roleHint )
     {
         return get( type, roleHint, Thread.currentThread().getContextClassLoader() );
     }
@@ -91,7 +144,7 @@ public class ComponentIndex<V>
      * @param classLoader the class loader to search from
      * @return the value associated with the type and roleHint, or null
      */
-    public synchronized V get( Class<?> type, String roleHint, ClassLoader classLoader )
+    public V get( Class<?> type, String roleHint, ClassLoader classLoader )
     {
         if ( type == null )
         {
@@ -102,21 +155,21 @@ public class ComponentIndex<V>
             roleHint = PLEXUS_DEFAULT_HINT;
         }
 
-        Collection<V> values = findAll( type, classLoader ).get( roleHint );
-        if ( values.isEmpty() )
-        {
-            return null;
-        }
-        return values.iterator().next();
+        return resolve( type, classLoader ).firstValues.get( roleHint );
+    }
+
+    public Collection<V> getAll( )
+    {
+        return getAll( index );
     }
 
-    public synchronized Collection<V> getAll( )
+    private static <V> Collection<V> getAll( Map<ClassLoader, RoleTable<V>> index )
     {
         ArrayList<V> values = new ArrayList<V>();
 
-        for ( SortedMap<Class<?>, Multimap<String, V>> roleIndex : index.values() )
+        for ( RoleTable<V> roleTable : index.values() )
         {
-            for ( Multimap<String, V> roleHintIndex : roleIndex.values() )
+            for ( Multimap<String, V> roleHintIndex : roleTable.values() )
             {
                 values.addAll(roleHintIndex.values());
             }
@@ -135,7 +188,7 @@ public class ComponentIndex<V>
      * @param type the type (or super type if enabled) associated with the value; not null
      * @return all values associated with the type; never null
      */
-    public synchronized List<V> getAll( Class<?> type )
+    public List<V> getAll( Class<?> type )
     {
         return getAll( type, Thread.currentThread().getContextClassLoader() );
     }
@@ -152,14 +205,14 @@ public class ComponentIndex<V>
      * @param classLoader the class loader to search from
      * @return all values associated with the type; never null
      */
-    public synchronized List<V> getAll( Class<?> type, ClassLoader classLoader )
+    public List<V> getAll( Class<?> type, ClassLoader classLoader )
     {
         if ( type == null )
         {
             throw new NullPointerException( "type is null" );
         }
 
-        return new ArrayList<V>( findAll( type, classLoader ).values() );
+        return new ArrayList<V>( resolve( type, classLoader ).values.values() );
     }
 
     /**
@@ -171,7 +224,7 @@ public class ComponentIndex<V>
      * @param type the type (or super type if enabled) associated with the value; not null
      * @return all of the value associated with the type; never null
      */
-    public synchronized Map<String, V> getAllAsMap( Class<?> type )
+    public Map<String, V> getAllAsMap( Class<?> type )
     {
         return getAllAsMap( type, Thread.currentThread().getContextClassLoader() );
     }
@@ -186,31 +239,71 @@ public class ComponentIndex<V>
      * @param classLoader the class loader to search from
      * @return all of the value associated with the type; never null
      */
-    public synchronized Map<String, V> getAllAsMap( Class<?> type, ClassLoader classLoader )
+    public Map<String, V> getAllAsMap( Class<?> type, ClassLoader classLoader )
     {
         if ( type == null )
         {
             throw new NullPointerException( "type is null" );
         }
 
-        Map<String, V> descriptors = new TreeMap<String, V>();
-        for ( Entry<String, V> entry : findAll( type, classLoader ).entries() )
+        return new TreeMap<String, V>( resolve( type, classLoader ).firstValues );
+    }
+
+    private Resolution<V> resolve( Class<?> type, ClassLoader classLoader )
+    {
+        if ( classLoader == null )
+        {
+            classLoader = type.getClassLoader();
+        }
+        Object key = classLoader != null ? classLoader : NULL_CLASS_LOADER;
+
+        WeakIdentityMap<Object, Resolution<V>> typeResolutions = resolutions.get( type.getName() );
+        if ( typeResolutions != null )
         {
-            if ( !descriptors.containsKey( entry.getKey() ) )
+            Resolution<V> resolution = typeResolutions.get( key );
+            if ( resolution != null )
             {
-                descriptors.put( entry.getKey(), entry.getValue() );
+                return resolution;
             }
         }
-        return descriptors;
-    }
 
-    private synchronized Multimap<String, V> findAll( Class<?> type, ClassLoader classLoader )
-    {
-         if ( classLoader == null )
+        // read the snapshot once, so the whole search sees a consistent index
+        Map<ClassLoader, RoleTable<V>> index = this.index;
+
+        // nothing has ever been registered for this role
+        Integer roleId = roleIds.get( type.getName() );
+        if ( roleId == null )
         {
-            classLoader = type.getClassLoader();
+            return Resolution.empty();
         }
 
+        Resolution<V> resolution = findAll( index, roleId, classLoader );
+
+        if ( typeResolutions == null )
+        {
+            typeResolutions = new WeakIdentityMap<Object, Resolution<V>>();
+            WeakIdentityMap<Object, Resolution<V>> existing = resolutions.putIfAbsent( type.getName(), typeResolutions );
+            if ( existing != null )
+            {
+                typeResolutions = existing;
+            }
+        }
+        typeResolutions.put( key, resolution );
+
+        // writers invalidate after publishing a new snapshot, so if the index changed while we were resolving,
+        // the invalidation may have run before our put... simply discard the resolution in that case
+        if ( this.index != index )
+        {
+            typeResolutions.remove( key, resolution );
+        }
+
+        return resolution;
+    }
+
+    private static <V> Resolution<V> findAll( Map<ClassLoader, RoleTable<V>> index,
+                                              int roleId,
+                                              ClassLoader classLoader )
+    {
         // Determine class loaders to search
         LinkedHashSet<ClassLoader> classLoaders = new LinkedHashSet<ClassLoader>();
         for ( ClassLoader cl = classLoader; cl != null; cl = cl.getParent() )
@@ -232,7 +325,8 @@ public class ComponentIndex<V>
             }
         }
         // todo remove this when plexus code is updated to manage thread context class loader correctly
-        if ( classLoaders.isEmpty() )
+        boolean global = classLoaders.isEmpty();
+        if ( global )
         {
             classLoaders.addAll( index.keySet() );
         }
@@ -241,64 +335,207 @@ public class ComponentIndex<V>
         Multimap<String, V> roleHintIndex = Multimaps.newHashMultimap();
         for ( ClassLoader cl : classLoaders )
         {
-            SortedMap<Class<?>, Multimap<String, V>> roleIndex = index.get( cl );
-            if ( roleIndex != null )
+            RoleTable<V> roleTable = index.get( cl );
+            if ( roleTable != null )
             {
-                Multimap<String, V> values = roleIndex.get( type );
+                Multimap<String, V> values = roleTable.get( roleId );
                 if ( values != null )
                 {
                     roleHintIndex.putAll( values );
                 }
             }
         }
-        return Multimaps.unmodifiableMultimap( roleHintIndex );
+
+        return new Resolution<V>( global ? null : classLoaders, roleHintIndex );
+    }
+
+    /**
+     * Discards the cached resolutions of the specified roles that search the specified class loader.
+     */
+    private void invalidate( ClassLoader classLoader, Collection<Integer> roleIds )
+    {
+        for ( Integer roleId : roleIds )
+        {
+            String roleName = roleNames.get( roleId );
+            WeakIdentityMap<Object, Resolution<V>> typeResolutions = resolutions.get( roleName );
+            if ( typeResolutions != null )
+            {
+                invalidate( classLoader, roleName, typeResolutions );
+            }
+        }
+    }
+
+    /**
+     * Discards all cached resolutions that search the specified class loader.
+     */
+    private void invalidate( ClassLoader classLoader )
+    {
+        for ( Entry<String, WeakIdentityMap<Object, Resolution<V>>> entry : resolutions.entrySet() )
+        {
+            invalidate( classLoader, entry.getKey(), entry.getValue() );
+        }
+    }
+
+    private void invalidate( ClassLoader classLoader,
+                             String roleName,
+                             WeakIdentityMap<Object, Resolution<V>> typeResolutions )
+    {
+        for ( Object key : typeResolutions.keys() )
+        {
+            Resolution<V> resolution = typeResolutions.get( key );
+            if ( resolution != null && ( key == classLoader || resolution.searches( classLoader ) ) )
+            {
+                typeResolutions.remove( key, resolution );
+            }
+        }
+
+        // a reader that still holds the dropped map only loses the resolution it caches
+        if ( typeResolutions.size() == 0 )
+        {
+            resolutions.remove( roleName, typeResolutions );
+        }
+    }
+
+    /**
+     * Is a resolution of the type cached for the lookup class loader?
+     */
+    boolean isResolutionCached( Class<?> type, ClassLoader classLoader )
+    {
+        WeakIdentityMap<Object, Resolution<V>> typeResolutions = resolutions.get( type.getName() );
+        return typeResolutions != null && typeResolutions.get( classLoader ) != null;
     }
 
     /**
      * Associate a value with the specified class loader, type and roleHint.  The value is also associated with all
      * superclasses and interfaces of the specified type unless index by all types is disabled.
      */
-    public synchronized void add( ClassLoader classLoader, Class<?> type, String roleHint, V value )
+    public void add( ClassLoader classLoader, Class<?> type, String roleHint, V value )
     {
-        if ( classLoader == null )
+        addAll( Collections.singletonList( new Registration<V>( classLoader, type, roleHint, value ) ) );
+    }
+
+    /**
+     * Adds all of the registrations to the index.  The registrations are published together, so readers either see
+     * none or all of them.
+     */
+    public synchronized void addAll( Collection<Registration<V>> registrations )
+    {
+        // ClassLoader -> Role id -> RoleHint -> Values
+        Map<ClassLoader, Map<Integer, Multimap<String, V>>> modified =
+            new LinkedHashMap<ClassLoader, Map<Integer, Multimap<String, V>>>();
+        List<Slot> newSlots = new ArrayList<Slot>( registrations.size() );
+        for ( Registration<V> registration : registrations )
         {
-            throw new NullPointerException( "classLoader is null" );
+            Map<Integer, Multimap<String, V>> changes = modified.get( registration.classLoader );
+            if ( changes == null )
+            {
+                changes = new LinkedHashMap<Integer, Multimap<String, V>>();
+                modified.put( registration.classLoader, changes );
+            }
+            RoleTable<V> roleTable = index.get( registration.classLoader );
+
+            int[] roleIds = getRoleIds( registration.type );
+            for ( int roleId : roleIds )
+            {
+                Multimap<String, V> roleHintIndex = changes.get( roleId );
+                if ( roleHintIndex == null )
+                {
+                    roleHintIndex = roleTable != null ? roleTable.get( roleId ) : null;
+                    if ( roleHintIndex == null )
+                    {
+                        roleHintIndex = new ArrayListMultimap<String, V>();
+                    }
+                    else
+                    {
+                        roleHintIndex = new ArrayListMultimap<String, V>( roleHintIndex );
+                    }
+                    changes.put( roleId, roleHintIndex );
+                }
+                roleHintIndex.put( registration.roleHint, registration.value );
+            }
+            newSlots.add( new Slot( registration.classLoader, roleIds, registration.roleHint ) );
         }
-        if ( type == null )
+
+        if ( modified.isEmpty() )
         {
-            throw new NullPointerException( "type is null" );
+            return;
         }
-        if ( roleHint == null )
+
+        Map<ClassLoader, RoleTable<V>> newIndex = new LinkedHashMap<ClassLoader, RoleTable<V>>( index );
+        for ( Entry<ClassLoader, Map<Integer, Multimap<String, V>>> entry : modified.entrySet() )
         {
-            roleHint = PLEXUS_DEFAULT_HINT;
+            RoleTable<V> roleTable = newIndex.get( entry.getKey() );
+            if ( roleTable == null )
+            {
+                roleTable = RoleTable.empty();
+            }
+            newIndex.put( entry.getKey(), roleTable.with( entry.getValue() ) );
         }
-        if ( value == null )
+
+        int i = 0;
+        for ( Registration<V> registration : registrations )
         {
-            throw new NullPointerException( "value is null" );
+            List<Slot> valueSlots = slots.get( registration.value );
+            if ( valueSlots == null )
+            {
+                valueSlots = new ArrayList<Slot>();
+                slots.put( registration.value, valueSlots );
+            }
+            valueSlots.add( newSlots.get( i++ ) );
         }
 
-        SortedMap<Class<?>, Multimap<String, V>> roleIndex = index.get( classLoader );
-        if ( roleIndex == null )
+        // publish the new snapshot
+        index = newIndex;
+        for ( Entry<ClassLoader, Map<Integer, Multimap<String, V>>> entry : modified.entrySet() )
         {
-            roleIndex = new TreeMap<Class<?>, Multimap<String, V>>( ClassComparator.INSTANCE );
-            index.put( classLoader, roleIndex );
+            invalidate( entry.getKey(), entry.getValue().keySet() );
         }
+    }
 
-        for ( Class<?> clazz : getAllTypes( type ) )
+    /**
+     * Gets the ids of all roles the specified type is indexed by, assigning new ids to roles that have never been
+     * seen.  When indexing by all types, the closure of each type is only computed once.  Must be called by a writer.
+     */
+    private int[] getRoleIds( Class<?> type )
+    {
+        if ( !indexByAllTypes )
+        {
+            return new int[] { getRoleId( type ) };
+        }
+
+        int[] roleIds = roleClosures.get( type );
+        if ( roleIds == null )
         {
-            Multimap<String, V> roleHintIndex = roleIndex.get( clazz );
-            if ( roleHintIndex == null )
+            Set<Class<?>> allTypes = getAllTypes( type );
+            roleIds = new int[allTypes.size()];
+            int i = 0;
+            for ( Class<?> clazz : allTypes )
             {
-                roleHintIndex = new ArrayListMultimap<String, V>();
-                roleIndex.put( clazz, roleHintIndex );
+                roleIds[i++] = getRoleId( clazz );
             }
-            roleHintIndex.put( roleHint, value );
+            roleClosures.put( type, roleIds );
+        }
+        return roleIds;
+    }
+
+    /**
+     * Gets the id of the specified role type, assigning a new id if the role has never been seen.  Must be called
+     * by a writer.
+     */
+    private int getRoleId( Class<?> type )
+    {
+        Integer roleId = roleIds.get( type.getName() );
+        if ( roleId == null )
+        {
+            roleId = roleNames.size();
+            roleNames.add( type.getName() );
+            roleIds.put( type.getName(), roleId );
         }
+        return roleId;
     }
 
     /**
-     * Removes the specified value from the index.  This is operation requires a linear search of the whole index, and
-     * is therefor very expensive.
+     * Removes the specified value from the index.  Only the slots occupied by the value are visited.
      * @param value the value to remove
      */
     public synchronized void remove( V value )
@@ -308,11 +545,47 @@ public class ComponentIndex<V>
             throw new NullPointerException( "value is null" );
         }
 
-        for ( SortedMap<Class<?>, Multimap<String, V>> roleIndex : index.values() )
+        List<Slot> valueSlots = slots.remove( value );
+        if ( valueSlots == null )
+        {
+            return;
+        }
+
+        // group the slots by class loader
+        Map<ClassLoader, Map<Integer, Multimap<String, V>>> modified =
+            new LinkedHashMap<ClassLoader, Map<Integer, Multimap<String, V>>>();
+        for ( Slot slot : valueSlots )
         {
-            for ( Multimap<String, V> roleHintIndex : roleIndex.values() )
+            RoleTable<V> roleTable = index.get( slot.classLoader );
+            if ( roleTable == null )
             {
-                for ( Iterator<V> iterator = roleHintIndex.values().iterator(); iterator.hasNext(); )
+                continue;
+            }
+
+            Map<Integer, Multimap<String, V>> changes = modified.get( slot.classLoader );
+            if ( changes == null )
+            {
+                changes = new LinkedHashMap<Integer, Multimap<String, V>>();
+                modified.put( slot.classLoader, changes );
+            }
+
+            for ( int roleId : slot.roleIds )
+            {
+                Multimap<String, V> roleHintIndex = changes.get( roleId );
+                if ( roleHintIndex == null )
+                {
+                    roleHintIndex = roleTable.get( roleId );
+                    if ( roleHintIndex == null )
+                    {
+                        continue;
+                    }
+
+                    // copy the role hint index before modifying it
+                    roleHintIndex = new ArrayListMultimap<String, V>( roleHintIndex );
+                    changes.put( roleId, roleHintIndex );
+                }
+
+                for ( Iterator<V> iterator = roleHintIndex.get( slot.roleHint ).iterator(); iterator.hasNext(); )
                 {
                     V v = iterator.next();
                     if ( value.equals( v ) )
@@ -322,10 +595,29 @@ public class ComponentIndex<V>
                 }
             }
         }
+
+        if ( modified.isEmpty() )
+        {
+            return;
+        }
+
+        Map<ClassLoader, RoleTable<V>> newIndex = new LinkedHashMap<ClassLoader, RoleTable<V>>( index );
+        for ( Entry<ClassLoader, Map<Integer, Multimap<String, V>>> entry : modified.entrySet() )
+        {
+            newIndex.put( entry.getKey(), newIndex.get( entry.getKey() ).with( entry.getValue() ) );
+        }
+
+        // publish the new snapshot
+        index = newIndex;
+        for ( Entry<ClassLoader, Map<Integer, Multimap<String, V>>> entry : modified.entrySet() )
+        {
+            invalidate( entry.getKey(), entry.getValue().keySet() );
+        }
     }
 
     /**
      * Removes all values associated with the specified class loader.  This operation is very fast.
+     * @return the values that were removed; never null
      */
     public synchronized List<V> removeAll( ClassLoader classLoader )
     {
@@ -336,11 +628,45 @@ public class ComponentIndex<V>
 
         ArrayList<V> values = new ArrayList<V>();
 
-        SortedMap<Class<?>, Multimap<String, V>> roleIndex = index.remove( classLoader );
-        for ( Multimap<String, V> roleHintIndex : roleIndex.values() )
+        if ( !index.containsKey( classLoader ) )
+        {
+            // the class loader may still have been used for lookups
+            invalidate( classLoader );
+            return values;
+        }
+
+        Map<ClassLoader, RoleTable<V>> newIndex = new LinkedHashMap<ClassLoader, RoleTable<V>>( index );
+        RoleTable<V> roleTable = newIndex.remove( classLoader );
+
+        // publish the new snapshot
+        index = newIndex;
+        invalidate( classLoader );
+
+        for ( Multimap<String, V> roleHintIndex : roleTable.values() )
         {
             values.addAll(roleHintIndex.values());
         }
+
+        // forget the slots in the removed class loader
+        for ( V value : values )
+        {
+            List<Slot> valueSlots = slots.get( value );
+            if ( valueSlots == null )
+            {
+                continue;
+            }
+            for ( Iterator<Slot> iterator = valueSlots.iterator(); iterator.hasNext(); )
+            {
+                if ( iterator.next().classLoader == classLoader )
+                {
+                    iterator.remove();
+                }
+            }
+            if ( valueSlots.isEmpty() )
+            {
+                slots.remove( value );
+            }
+        }
         return values;
     }
 
@@ -349,8 +675,10 @@ public class ComponentIndex<V>
      */
     public synchronized Collection<V> clear()
     {
-        Collection<V> all = getAll();
-        index.clear();
+        Collection<V> all = getAll( index );
+        index = Collections.emptyMap();
+        slots.clear();
+        resolutions.clear();
         return all;
     }
 
@@ -399,13 +727,233 @@ public class ComponentIndex<V>
         return allTypes;
     }
 
-    private static final class ClassComparator implements Comparator<Class<?>>, Serializable
+    /**
+     * The merged view of all values visible to a type from a lookup class loader.
+     */
+    private static final class Resolution<V>
     {
-        private static final ClassComparator INSTANCE = new ClassComparator();
+        private static final Resolution<Object> EMPTY =
+            new Resolution<Object>( Collections.<ClassLoader>emptySet(), Multimaps.<String, Object>newHashMultimap() );
+
+        /**
+         * The class loaders searched to build this resolution, or null if all class loaders were searched.  They are
+         * weakly referenced, so a cached resolution does not keep its lookup class loader alive.
+         */
+        private final WeakIdentityMap<ClassLoader, Boolean> classLoaders;
+
+        /**
+         * RoleHint -> Values
+         */
+        private final Multimap<String, V> values;
+
+        /**
+         * RoleHint -> First value
+         */
+        private final Map<String, V> firstValues;
+
+        private Resolution( Set<ClassLoader> classLoaders, Multimap<String, V> values )
+        {
+            if ( classLoaders == null )
+            {
+                this.classLoaders = null;
+            }
+            else
+            {
+                this.classLoaders = new WeakIdentityMap<ClassLoader, Boolean>();
+                for ( ClassLoader classLoader : classLoaders )
+                {
+                    this.classLoaders.put( classLoader, Boolean.TRUE );
+                }
+            }
+            this.values = Multimaps.unmodifiableMultimap( values );
 
-        public int compare( Class<?> class1, Class<?> class2 )
+            Map<String, V> firstValues = new HashMap<String, V>();
+            for ( Entry<String, V> entry : values.entries() )
+            {
+                if ( !firstValues.containsKey( entry.getKey() ) )
+                {
+                    firstValues.put( entry.getKey(), entry.getValue() );
+                }
+            }
+            this.firstValues = Collections.unmodifiableMap( firstValues );
+        }
+
+        @SuppressWarnings( "unchecked" )
+        private static <V> Resolution<V> empty()
+        {
+            return (Resolution<V>) EMPTY;
+        }
+
+        private boolean searches( ClassLoader classLoader )
+        {
+            return classLoaders == null || classLoaders.get( classLoader ) != null;
+        }
+    }
+
+    /**
+     * A value to be added to the index with {@link ComponentIndex#addAll(Collection)}.
+     */
+    public static final class Registration<V>
+    {
+        private final ClassLoader classLoader;
+        private final Class<?> type;
+        private final String roleHint;
+        private final V value;
+
+        /**
+         * @param classLoader the class loader the value is registered in; not null
+         * @param type the type (and super types if enabled) the value is associated with; not null
+         * @param roleHint the roleHint associated with the value, or null for the default roleHint
+         * @param value the value; not null
+         */
+        public Registration( ClassLoader classLoader, Class<?> type, String roleHint, V value )
         {
-            return class1.getName().compareTo( class2.getName() );
+            if ( classLoader == null )
+            {
+                throw new NullPointerException( "classLoader is null" );
+            }
+            if ( type == null )
+            {
+                throw new NullPointerException( "type is null" );
+            }
+            if ( roleHint == null )
+            {
+                roleHint = PLEXUS_DEFAULT_HINT;
+            }
+            if ( value == null )
+            {
+                throw new NullPointerException( "value is null" );
+            }
+            this.classLoader = classLoader;
+            this.type = type;
+            this.roleHint = roleHint;
+            this.value = value;
+        }
+    }
+
+    /**
+     * The locations in the index occupied by a value: the value is registered under the role hint of each role in
+     * the class loader.
+     */
+    private static final class Slot
+    {
+        private final ClassLoader classLoader;
+        private final int[] roleIds;
+        private final String roleHint;
+
+        private Slot( ClassLoader classLoader, int[] roleIds, String roleHint )
+        {
+            this.classLoader = classLoader;
+            this.roleIds = roleIds;
+            this.roleHint = roleHint;
+        }
+    }
+
+    /**
+     * The roles registered in a single class loader: an immutable open addressing hash table from role id to the
+     * role hint index of the role.  Role ids are dense, so the id itself is used as the hash.
+     */
+    private static final class RoleTable<V>
+    {
+        private static final RoleTable<Object> EMPTY = new RoleTable<Object>( 0 );
+
+        private final int[] roleIds;
+        private final Multimap<String, V>[] values;
+
+        @SuppressWarnings( "unchecked" )
+        private RoleTable( int capacity )
+        {
+            roleIds = new int[capacity];
+            values = new Multimap[capacity];
+        }
+
+        @SuppressWarnings( "unchecked" )
+        private static <V> RoleTable<V> empty()
+        {
+            return (RoleTable<V>) EMPTY;
+        }
+
+        private Multimap<String, V> get( int roleId )
+        {
+            if ( values.length == 0 )
+            {
+                return null;
+            }
+
+            int mask = values.length - 1;
+            for ( int i = roleId & mask; ; i = ( i + 1 ) & mask )
+            {
+                Multimap<String, V> value = values[i];
+                if ( value == null || roleIds[i] == roleId )
+                {
+                    return value;
+                }
+            }
+        }
+
+        private List<Multimap<String, V>> values()
+        {
+            List<Multimap<String, V>> list = new ArrayList<Multimap<String, V>>( values.length );
+            for ( Multimap<String, V> value : values )
+            {
+                if ( value != null )
+                {
+                    list.add( value );
+                }
+            }
+            return list;
+        }
+
+        /**
+         * Creates a copy of this table with the specified changes applied.  Roles changed to an empty role hint index
+         * are removed from the table.
+         */
+        private RoleTable<V> with( Map<Integer, Multimap<String, V>> changes )
+        {
+            Map<Integer, Multimap<String, V>> entries = new LinkedHashMap<Integer, Multimap<String, V>>();
+            for ( int i = 0; i < values.length; i++ )
+            {
+                if ( values[i] != null )
+                {
+                    entries.put( roleIds[i], values[i] );
+                }
+            }
+            for ( Entry<Integer, Multimap<String, V>> change : changes.entrySet() )
+            {
+                if ( change.getValue().isEmpty() )
+                {
+                    entries.remove( change.getKey() );
+                }
+                else
+                {
+                    entries.put( change.getKey(), change.getValue() );
+                }
+            }
+
+            // keep the table at most half full
+            int capacity = 0;
+            if ( !entries.isEmpty() )
+            {
+                capacity = 2;
+                while ( capacity < entries.size() * 2 )
+                {
+                    capacity <<= 1;
+                }
+            }
+
+            RoleTable<V> table = new RoleTable<V>( capacity );
+            int mask = capacity - 1;
+            for ( Entry<Integer, Multimap<String, V>> entry : entries.entrySet() )
+            {
+                int i = entry.getKey() & mask;
+                while ( table.values[i] != null )
+                {
+                    i = ( i + 1 ) & mask;
+                }
+                table.roleIds[i] = entry.getKey();
+                table.values[i] = entry.getValue();
+            }
+            return table;
         }
     }
 }
@@ -0,0 +1,166 @@
+package org.codehaus.plexus.component;
+
+/*
+ * Copyright 2001-2006 Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.codehaus.plexus.component.manager.ScopedComponentManager;
+import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A scope entered by a thread.  The instances of "scoped" components created in the scope are destroyed when the
+ * scope is exited.
+ *
+ * @see ComponentScopes
+ */
+public final class ComponentScope
+    implements ScopeHandle
+{
+    private final ComponentScopes scopes;
+
+    private final String name;
+
+    private final Thread thread;
+
+    private volatile boolean active = true;
+
+    /**
+     * The managers that created an instance in this scope, in creation order; guarded by this
+     */
+    private final List<ScopedComponentManager<?>> managers = new ArrayList<ScopedComponentManager<?>>();
+
+    ComponentScope( ComponentScopes scopes, String name, Thread thread )
+    {
+        this.scopes = scopes;
+        this.name = name;
+        this.thread = thread;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public boolean isActive()
+    {
+        return active;
+    }
+
+    /**
+     * Records that the manager created an instance in this scope, so the manager is notified when the scope is
+     * exited.
+     * @return false if this scope is no longer active, in which case the manager is not notified
+     */
+    public synchronized boolean addManager( ScopedComponentManager<?> manager )
+    {
+        if ( !active )
+        {
+            return false;
+        }
+        managers.add( manager );
+        return true;
+    }
+
+    public void exit() throws ComponentLifecycleException
+    {
+        List<ComponentScope> exited = new ArrayList<ComponentScope>();
+        if ( Thread.currentThread() == thread )
+        {
+            // exit the scopes entered after this one first
+            LinkedList<ComponentScope> stack = scopes.getStack();
+            if ( stack.contains( this ) )
+            {
+                ComponentScope scope;
+                do
+                {
+                    scope = stack.removeFirst();
+                    exited.add( scope );
+                }
+                while ( scope != this );
+            }
+        }
+        else
+        {
+            exited.add( this );
+        }
+
+        ComponentLifecycleException componentLifecycleException = null;
+        for ( ComponentScope scope : exited )
+        {
+            try
+            {
+                scope.destroyInstances();
+            }
+            catch ( ComponentLifecycleException e )
+            {
+                if ( componentLifecycleException == null )
+                {
+                    componentLifecycleException = e;
+                }
+            }
+        }
+
+        if ( componentLifecycleException != null )
+        {
+            throw componentLifecycleException;
+        }
+    }
+
+    private void destroyInstances() throws ComponentLifecycleException
+    {
+        List<ScopedComponentManager<?>> managers;
+        synchronized ( this )
+        {
+            if ( !active )
+            {
+                return;
+            }
+            active = false;
+            managers = new ArrayList<ScopedComponentManager<?>>( this.managers );
+            this.managers.clear();
+        }
+
+        // destroy in reverse creation order, since later instances may depend on earlier ones
+        ComponentLifecycleException componentLifecycleException = null;
+        for ( int i = managers.size() - 1; i >= 0; i-- )
+        {
+            try
+            {
+                managers.get( i ).scopeExited( this );
+            }
+            catch ( ComponentLifecycleException e )
+            {
+                if ( componentLifecycleException == null )
+                {
+                    componentLifecycleException = e;
+                }
+            }
+        }
+
+        if ( componentLifecycleException != null )
+        {
+            throw componentLifecycleException;
+        }
+    }
+
+    public String toString()
+    {
+        return "ComponentScope[" + name + "]";
+    }
+}
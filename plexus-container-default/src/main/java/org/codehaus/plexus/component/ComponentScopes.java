@@ -0,0 +1,91 @@
+package org.codehaus.plexus.component;
+
+/*
+ * Copyright 2001-2006 Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
+
+import java.util.LinkedList;
+
+/**
+ * The scopes entered by each thread in one container.  The innermost active scope of the current thread is the
+ * scope used by the "scoped" components of the container.
+ */
+public final class ComponentScopes
+{
+    private final ThreadLocal<LinkedList<ComponentScope>> stack = new ThreadLocal<LinkedList<ComponentScope>>()
+    {
+        protected LinkedList<ComponentScope> initialValue()
+        {
+            return new LinkedList<ComponentScope>();
+        }
+    };
+
+    /**
+     * Enters a new scope on the current thread.
+     * @param name the name of the scope; not null
+     * @return the new scope
+     */
+    public ComponentScope enterScope( String name )
+    {
+        if ( name == null )
+        {
+            throw new NullPointerException( "name is null" );
+        }
+
+        ComponentScope scope = new ComponentScope( this, name, Thread.currentThread() );
+        stack.get().addFirst( scope );
+        return scope;
+    }
+
+    /**
+     * Exits the innermost scope of the current thread.
+     * @throws IllegalStateException if the current thread has not entered a scope
+     */
+    public void exitScope() throws ComponentLifecycleException
+    {
+        ComponentScope scope = getCurrentScope();
+        if ( scope == null )
+        {
+            throw new IllegalStateException( "No scope has been entered by the current thread" );
+        }
+        scope.exit();
+    }
+
+    /**
+     * Gets the innermost active scope of the current thread.
+     * @return the current scope, or null if the current thread has not entered a scope
+     */
+    public ComponentScope getCurrentScope()
+    {
+        LinkedList<ComponentScope> stack = getStack();
+
+        // scopes exited from other threads are still on the stack of the thread that entered them
+        while ( !stack.isEmpty() && !stack.getFirst().isActive() )
+        {
+            stack.removeFirst();
+        }
+        return stack.isEmpty() ? null : stack.getFirst();
+    }
+
+    /**
+     * Gets the scopes entered by the current thread, innermost first.
+     */
+    LinkedList<ComponentScope> getStack()
+    {
+        return stack.get();
+    }
+}
@@ -0,0 +1,194 @@
+package org.codehaus.plexus.component;
+
+/*
+ * Copyright 2001-2006 Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.codehaus.plexus.util.StringUtils;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The setters and fields of the properties of a component implementation class, resolved once per class and
+ * property.  The cached members have their access checks disabled, so they can be used without toggling
+ * setAccessible for every assignment.
+ *
+ * Plans are keyed weakly by class, but a plan references its class through the cached members, so the plan is only
+ * held softly: the class and its class loader can not be unloaded until the garbage collector clears the soft
+ * reference, which it does before running out of memory.  This delay is accepted so that plans survive between
+ * lookups.
+ */
+public final class InjectionPlan
+{
+    private static final WeakIdentityMap<Class<?>, SoftReference<InjectionPlan>> PLANS =
+        new WeakIdentityMap<Class<?>, SoftReference<InjectionPlan>>();
+
+    private final Class<?> type;
+
+    private final ConcurrentMap<String, Property> properties = new ConcurrentHashMap<String, Property>();
+
+    private InjectionPlan( Class<?> type )
+    {
+        this.type = type;
+    }
+
+    /**
+     * Gets the plan of the specified class.
+     */
+    public static InjectionPlan forClass( Class<?> type )
+    {
+        SoftReference<InjectionPlan> reference = PLANS.get( type );
+        InjectionPlan plan = reference == null ? null : reference.get();
+        if ( plan == null )
+        {
+            // racing threads create equivalent plans, so the last one published wins
+            plan = new InjectionPlan( type );
+            PLANS.put( type, new SoftReference<InjectionPlan>( plan ) );
+        }
+        return plan;
+    }
+
+    /**
+     * Gets the first public, non-static, single argument setter of the property returning void, as found by
+     * ReflectionUtils.getSetter.
+     *
+     * @return the setter, or null if there is none
+     */
+    public Method getSetter( String name )
+    {
+        return getProperty( name ).setter;
+    }
+
+    /**
+     * Gets the non-static single argument setters of the property returning void declared by the class or its
+     * superclasses, with any visibility.  An overridden setter is only returned once, as declared by the most derived class.
+     *
+     * @return the setters; never null
+     */
+    public List<Method> getDeclaredSetters( String name )
+    {
+        return getProperty( name ).declaredSetters;
+    }
+
+    /**
+     * Gets the field of the property declared by the class or its superclasses, as found by
+     * ReflectionUtils.getFieldByNameIncludingSuperclasses.
+     *
+     * @return the field, or null if there is none
+     */
+    public Field getField( String name )
+    {
+        return getProperty( name ).field;
+    }
+
+    private Property getProperty( String name )
+    {
+        Property property = properties.get( name );
+        if ( property == null )
+        {
+            property = new Property( type, name );
+            properties.put( name, property );
+        }
+        return property;
+    }
+
+    private static final class Property
+    {
+        private final Method setter;
+
+        private final List<Method> declaredSetters;
+
+        private final Field field;
+
+        private Property( Class<?> type, String name )
+        {
+            String setterName = "set" + StringUtils.capitalizeFirstLetter( name );
+
+            Method setter = null;
+            for ( Method method : type.getMethods() )
+            {
+                if ( isSetter( method, setterName ) )
+                {
+                    setter = makeAccessible( method );
+                    break;
+                }
+            }
+            this.setter = setter;
+
+            List<Method> declaredSetters = new ArrayList<Method>();
+            for ( Class<?> c = type; c != null; c = c.getSuperclass() )
+            {
+                methods:
+                for ( Method method : c.getDeclaredMethods() )
+                {
+                    if ( isSetter( method, setterName ) )
+                    {
+                        for ( Method declaredSetter : declaredSetters )
+                        {
+                            if ( declaredSetter.getParameterTypes()[0].equals( method.getParameterTypes()[0] ) )
+                            {
+                                continue methods;
+                            }
+                        }
+                        declaredSetters.add( makeAccessible( method ) );
+                    }
+                }
+            }
+            this.declaredSetters = Collections.unmodifiableList( declaredSetters );
+
+            Field field = null;
+            for ( Class<?> c = type; c != null && field == null; c = c.getSuperclass() )
+            {
+                try
+                {
+                    field = makeAccessible( c.getDeclaredField( name ) );
+                }
+                catch ( NoSuchFieldException e )
+                {
+                    // try the superclass
+                }
+            }
+            this.field = field;
+        }
+
+        private static boolean isSetter( Method method, String setterName )
+        {
+            return method.getName().equals( setterName ) && method.getParameterTypes().length == 1 &&
+                method.getReturnType() == Void.TYPE && !Modifier.isStatic( method.getModifiers() );
+        }
+
+        private static <M extends AccessibleObject> M makeAccessible( M member )
+        {
+            try
+            {
+                member.setAccessible( true );
+            }
+            catch ( SecurityException e )
+            {
+                // the member is used with access checks
+            }
+            return member;
+        }
+    }
+}
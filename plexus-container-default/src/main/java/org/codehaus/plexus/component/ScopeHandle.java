@@ -0,0 +1,49 @@
+package org.codehaus.plexus.component;
+
+/*
+ * Copyright 2001-2006 Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
+
+/**
+ * A scope entered by a thread, such as a request.  Components with the "scoped" instantiation strategy have one
+ * instance per scope, and all of those instances are destroyed together when the scope is exited.
+ *
+ * @see org.codehaus.plexus.PlexusContainer#enterScope(String)
+ */
+public interface ScopeHandle
+{
+    /**
+     * Gets the name the scope was entered with.
+     * @return the name of the scope; never null
+     */
+    String getName();
+
+    /**
+     * Has this scope not been exited yet?
+     * @return true if the scope is still active; otherwise false
+     */
+    boolean isActive();
+
+    /**
+     * Exits this scope, and any scope entered after it on the same thread, destroying the component instances
+     * created in the scopes.  Exiting a scope that is no longer active has no effect.
+     * @throws ComponentLifecycleException if a component instance could not be destroyed; the remaining instances
+     * are still destroyed
+     */
+    void exit()
+        throws ComponentLifecycleException;
+}
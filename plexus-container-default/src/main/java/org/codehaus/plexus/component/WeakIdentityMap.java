@@ -0,0 +1,220 @@
+package org.codehaus.plexus.component;
+
+/*
+ * Copyright 2001-2006 Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A concurrent map with weakly referenced keys compared by identity.  This is used to track component instances,
+ * so the equals and hashCode methods of the instances are never called and an instance is never kept alive by
+ * being tracked.
+ *
+ * Reads never lock.  Writes are striped by the underlying ConcurrentHashMap.  Entries for collected keys are
+ * removed from a ReferenceQueue by the writing threads.
+ *
+ * Null keys and values are not supported.
+ */
+public final class WeakIdentityMap<K, V>
+{
+    private final ConcurrentMap<IdentityKey, V> map = new ConcurrentHashMap<IdentityKey, V>();
+
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+    /**
+     * Gets the value associated with the specified key.
+     * @return the value associated with the key, or null
+     */
+    public V get( Object key )
+    {
+        if ( key == null )
+        {
+            return null;
+        }
+        return map.get( new LookupKey( key ) );
+    }
+
+    /**
+     * Associates the value with the specified key.  If the key is already associated with the same value, this
+     * method does not write to the map.
+     * @return the value previously associated with the key, or null
+     */
+    public V put( K key, V value )
+    {
+        if ( key == null )
+        {
+            throw new NullPointerException( "key is null" );
+        }
+        if ( value == null )
+        {
+            throw new NullPointerException( "value is null" );
+        }
+
+        V existing = map.get( new LookupKey( key ) );
+        if ( existing == value )
+        {
+            return existing;
+        }
+
+        expungeStaleEntries();
+        return map.put( new WeakKey( key, queue ), value );
+    }
+
+    /**
+     * Removes the value associated with the specified key.
+     * @return the value previously associated with the key, or null
+     */
+    public V remove( Object key )
+    {
+        if ( key == null )
+        {
+            return null;
+        }
+
+        expungeStaleEntries();
+        return map.remove( new LookupKey( key ) );
+    }
+
+    /**
+     * Removes the entry for the specified key only if it is associated with the specified value.
+     * @return true if the entry was removed
+     */
+    public boolean remove( Object key, Object value )
+    {
+        if ( key == null || value == null )
+        {
+            return false;
+        }
+
+        expungeStaleEntries();
+        return map.remove( new LookupKey( key ), value );
+    }
+
+    /**
+     * Removes all entries from this map.
+     * @return the keys that were still strongly reachable; never null
+     */
+    public List<K> clear()
+    {
+        List<K> keys = keys();
+        map.clear();
+        expungeStaleEntries();
+        return keys;
+    }
+
+    /**
+     * Gets a snapshot of the keys in this map that are still strongly reachable.
+     * @return the keys; never null
+     */
+    @SuppressWarnings( "unchecked" )
+    public List<K> keys()
+    {
+        List<K> keys = new ArrayList<K>( map.size() );
+        for ( IdentityKey identityKey : map.keySet() )
+        {
+            K key = (K) identityKey.get();
+            if ( key != null )
+            {
+                keys.add( key );
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Gets the number of entries in this map, including entries for keys that have been collected but not yet
+     * removed.
+     */
+    public int size()
+    {
+        return map.size();
+    }
+
+    private void expungeStaleEntries()
+    {
+        for ( Reference<?> reference = queue.poll(); reference != null; reference = queue.poll() )
+        {
+            map.remove( reference );
+        }
+    }
+
+    private interface IdentityKey
+    {
+        Object get();
+    }
+
+    private static final class WeakKey extends WeakReference<Object> implements IdentityKey
+    {
+        private final int hashCode;
+
+        private WeakKey( Object key, ReferenceQueue<Object> queue )
+        {
+            super( key, queue );
+            hashCode = System.identityHashCode( key );
+        }
+
+        public boolean equals( Object o )
+        {
+            return this == o || keyEquals( this, o );
+        }
+
+        public int hashCode()
+        {
+            return hashCode;
+        }
+    }
+
+    private static final class LookupKey implements IdentityKey
+    {
+        private final Object key;
+
+        private LookupKey( Object key )
+        {
+            this.key = key;
+        }
+
+        public Object get()
+        {
+            return key;
+        }
+
+        public boolean equals( Object o )
+        {
+            return this == o || keyEquals( this, o );
+        }
+
+        public int hashCode()
+        {
+            return System.identityHashCode( key );
+        }
+    }
+
+    private static boolean keyEquals( IdentityKey key, Object o )
+    {
+        if ( !( o instanceof IdentityKey ) )
+        {
+            return false;
+        }
+        Object referent = key.get();
+        return referent != null && referent == ( (IdentityKey) o ).get();
+    }
+}
@@ -0,0 +1,332 @@
+package org.codehaus.plexus.component.builder;
+
+/*
+ * Copyright 2001-2006 Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.xbean.propertyeditor.PropertyEditorException;
+import org.apache.xbean.propertyeditor.PropertyEditors;
+import org.apache.xbean.recipe.ConstructionException;
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.codehaus.plexus.component.InjectionPlan;
+import org.codehaus.plexus.component.MapOrientedComponent;
+import org.codehaus.plexus.component.builder.XBeanComponentBuilder.RecipeProperty;
+import org.codehaus.plexus.component.builder.XBeanComponentBuilder.RecipeTemplate;
+import org.codehaus.plexus.component.builder.XBeanComponentBuilder.RequirementRecipe;
+import org.codehaus.plexus.component.factory.ComponentInstantiationException;
+import org.codehaus.plexus.component.manager.ComponentManager;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates components with an injector compiled once per descriptor.  The constructor, and the setter or field each
+ * requirement and configuration value is assigned to, are resolved when the first instance is built, simple
+ * configuration values are converted once, and every instance is then created with a constructor call and one
+ * assignment per property.
+ *
+ * Components the injector does not support are created by xbean-reflect as usual: auto matched requirements, array
+ * requirements, nested configuration, configuration values of other than String or primitive types, MapOrientedComponents,
+ * custom component factories, classes without a public no-arg constructor, and properties with overloaded setters.
+ */
+public class InjectorComponentBuilder<T>
+    extends XBeanComponentBuilder<T>
+{
+    private volatile CompiledInjector<T> compiledInjector;
+
+    public InjectorComponentBuilder()
+    {
+    }
+
+    public InjectorComponentBuilder( ComponentManager<T> componentManager )
+    {
+        super( componentManager );
+    }
+
+    protected T createComponentInstance( ComponentDescriptor<T> descriptor, ClassRealm realm )
+        throws ComponentInstantiationException
+    {
+        Injector<T> injector = getInjector( descriptor );
+        if ( injector == null )
+        {
+            return super.createComponentInstance( descriptor, realm );
+        }
+
+        if ( realm == null )
+        {
+            realm = descriptor.getRealm();
+        }
+
+        ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader( realm );
+        try
+        {
+            return injector.newInstance();
+        }
+        catch ( ConstructionException e )
+        {
+            throw toComponentInstantiationException( e );
+        }
+        finally
+        {
+            Thread.currentThread().setContextClassLoader( oldClassLoader );
+        }
+    }
+
+    /**
+     * Gets the injector of the descriptor, compiling it on first use.
+     *
+     * @return the injector, or null if the descriptor is not supported
+     */
+    private Injector<T> getInjector( ComponentDescriptor<T> descriptor )
+        throws ComponentInstantiationException
+    {
+        // the template is compiled again when the configurator of the descriptor changes
+        RecipeTemplate template = getRecipeTemplate( descriptor );
+
+        CompiledInjector<T> compiledInjector = this.compiledInjector;
+        if ( compiledInjector == null || compiledInjector.template != template )
+        {
+            // racing threads compile equivalent injectors, so the last one published wins
+            compiledInjector = new CompiledInjector<T>( template, compile( descriptor, template ) );
+            this.compiledInjector = compiledInjector;
+        }
+        return compiledInjector.injector;
+    }
+
+    /**
+     * Gets the injector compiled for the last descriptor built.
+     *
+     * @return the injector, or null if no instance has been built yet or the descriptor is not supported
+     */
+    Object getCompiledInjector()
+    {
+        CompiledInjector<T> compiledInjector = this.compiledInjector;
+        return compiledInjector == null ? null : compiledInjector.injector;
+    }
+
+    private static <T> Injector<T> compile( ComponentDescriptor<T> descriptor, RecipeTemplate template )
+    {
+        String factory = descriptor.getComponentFactory();
+        if ( factory != null && !factory.equals( "java" ) )
+        {
+            return null;
+        }
+
+        Class<? extends T> type = descriptor.getImplementationClass();
+        if ( MapOrientedComponent.class.isAssignableFrom( type ) || !Modifier.isPublic( type.getModifiers() ) ||
+            Modifier.isAbstract( type.getModifiers() ) )
+        {
+            return null;
+        }
+
+        Constructor<? extends T> constructor;
+        try
+        {
+            constructor = type.getConstructor();
+        }
+        catch ( NoSuchMethodException e )
+        {
+            return null;
+        }
+        constructor.setAccessible( true );
+
+        InjectionPlan plan = InjectionPlan.forClass( type );
+        List<Injection> injections = new ArrayList<Injection>();
+        for ( RecipeProperty property : template.properties )
+        {
+            if ( property.autoMatch )
+            {
+                return null;
+            }
+
+            Injection injection = compileInjection( plan, property );
+            if ( injection == null )
+            {
+                return null;
+            }
+            injections.add( injection );
+        }
+
+        return new Injector<T>( constructor, injections.toArray( new Injection[injections.size()] ) );
+    }
+
+    private static Injection compileInjection( InjectionPlan plan, RecipeProperty property )
+    {
+        // like xbean, prefer a setter over a field of the same name
+        List<Method> setters = plan.getDeclaredSetters( property.name );
+        AccessibleObject member;
+        Type valueType;
+        if ( setters.size() == 1 )
+        {
+            member = setters.get( 0 );
+            valueType = setters.get( 0 ).getGenericParameterTypes()[0];
+        }
+        else if ( setters.isEmpty() )
+        {
+            Field field = plan.getField( property.name );
+            if ( field == null || Modifier.isStatic( field.getModifiers() ) || Modifier.isFinal( field.getModifiers() ) )
+            {
+                return null;
+            }
+            member = field;
+            valueType = field.getGenericType();
+        }
+        else
+        {
+            // overloaded setters
+            return null;
+        }
+
+        Class<?> valueClass = member instanceof Method ? ( (Method) member ).getParameterTypes()[0]
+            : ( (Field) member ).getType();
+
+        if ( property.value instanceof RequirementRecipe )
+        {
+            // xbean converts the list looked up for an array requirement
+            if ( valueClass.isArray() )
+            {
+                return null;
+            }
+            return new Injection( member, (RequirementRecipe<?>) property.value, valueType, null );
+        }
+
+        if ( property.value instanceof String && isSimpleType( valueClass ) )
+        {
+            Object value;
+            try
+            {
+                value = PropertyEditors.getValue( valueClass, (String) property.value );
+            }
+            catch ( PropertyEditorException e )
+            {
+                // let xbean report the invalid value
+                return null;
+            }
+            return new Injection( member, null, valueType, value );
+        }
+
+        return null;
+    }
+
+    /**
+     * Values of these types are immutable, so a configuration value can be converted once and shared by all instances.
+     */
+    private static boolean isSimpleType( Class<?> type )
+    {
+        return type.isPrimitive() || type == String.class || type == Boolean.class || type == Character.class ||
+            Number.class.isAssignableFrom( type ) && type.getName().startsWith( "java.lang." );
+    }
+
+    private static final class CompiledInjector<T>
+    {
+        private final RecipeTemplate template;
+
+        private final Injector<T> injector;
+
+        private CompiledInjector( RecipeTemplate template, Injector<T> injector )
+        {
+            this.template = template;
+            this.injector = injector;
+        }
+    }
+
+    private static final class Injector<T>
+    {
+        private final Constructor<? extends T> constructor;
+
+        private final Injection[] injections;
+
+        private Injector( Constructor<? extends T> constructor, Injection[] injections )
+        {
+            this.constructor = constructor;
+            this.injections = injections;
+        }
+
+        private T newInstance()
+        {
+            T instance;
+            try
+            {
+                instance = constructor.newInstance();
+            }
+            catch ( InvocationTargetException e )
+            {
+                throw new ConstructionException( "Error invoking constructor " + constructor, e.getCause() );
+            }
+            catch ( Exception e )
+            {
+                throw new ConstructionException( "Error invoking constructor " + constructor, e );
+            }
+
+            for ( Injection injection : injections )
+            {
+                injection.inject( instance );
+            }
+            return instance;
+        }
+    }
+
+    private static final class Injection
+    {
+        private final AccessibleObject member;
+
+        private final RequirementRecipe<?> requirement;
+
+        private final Type valueType;
+
+        private final Object value;
+
+        private Injection( AccessibleObject member, RequirementRecipe<?> requirement, Type valueType, Object value )
+        {
+            this.member = member;
+            this.requirement = requirement;
+            this.valueType = valueType;
+            this.value = value;
+        }
+
+        private void inject( Object instance )
+        {
+            Object value = requirement != null ? requirement.create( valueType, false ) : this.value;
+            try
+            {
+                if ( member instanceof Field )
+                {
+                    ( (Field) member ).set( instance, value );
+                }
+                else
+                {
+                    ( (Method) member ).invoke( instance, value );
+                }
+            }
+            catch ( InvocationTargetException e )
+            {
+                throw new ConstructionException( "Error injecting " + member, e.getCause() );
+            }
+            catch ( Exception e )
+            {
+                throw new ConstructionException( "Error injecting " + member, e );
+            }
+        }
+    }
+}
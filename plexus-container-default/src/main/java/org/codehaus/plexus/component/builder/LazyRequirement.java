@@ -0,0 +1,131 @@
+package org.codehaus.plexus.component.builder;
+
+/*
+ * Copyright 2001-2006 Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.codehaus.plexus.component.repository.ComponentRequirement;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Resolves a lazy requirement.  A proxy implementing the interface of the injected field is injected in place of the
+ * required component, and the component is looked up on the first call to a method of the proxy other than equals and
+ * hashCode, which use the identity of the proxy.
+ *
+ * The lookup is made with the context class loader and lookup realm of the thread that created the proxy, like the
+ * lookup the proxy stands in for, rather than with those of the thread making the first call.
+ *
+ * If the lookup fails, the call throws an IllegalStateException, and the lookup is retried on the next call.
+ */
+final class LazyRequirement
+    implements InvocationHandler
+{
+    private final PlexusContainer container;
+
+    private final Class<?> roleType;
+
+    private final ComponentRequirement requirement;
+
+    private final ClassLoader classLoader;
+
+    private final ClassRealm lookupRealm;
+
+    private volatile Object component;
+
+    private LazyRequirement( PlexusContainer container, Class<?> roleType, ComponentRequirement requirement )
+    {
+        this.container = container;
+        this.roleType = roleType;
+        this.requirement = requirement;
+        classLoader = Thread.currentThread().getContextClassLoader();
+        lookupRealm = container.getLookupRealm();
+    }
+
+    /**
+     * Creates a proxy for the requirement.
+     * @param propertyType the interface type of the injected field or property
+     * @param roleType the role of the required component
+     */
+    public static Object newProxy( PlexusContainer container,
+                                   Class<?> propertyType,
+                                   Class<?> roleType,
+                                   ComponentRequirement requirement )
+    {
+        return Proxy.newProxyInstance( propertyType.getClassLoader(),
+                                       new Class<?>[]{ propertyType },
+                                       new LazyRequirement( container, roleType, requirement ) );
+    }
+
+    public Object invoke( Object proxy, Method method, Object[] args )
+        throws Throwable
+    {
+        if ( method.getDeclaringClass() == Object.class )
+        {
+            if ( method.getName().equals( "equals" ) )
+            {
+                return proxy == args[0];
+            }
+            if ( method.getName().equals( "hashCode" ) )
+            {
+                return System.identityHashCode( proxy );
+            }
+        }
+
+        try
+        {
+            return method.invoke( getComponent(), args );
+        }
+        catch ( InvocationTargetException e )
+        {
+            throw e.getCause();
+        }
+    }
+
+    private Object getComponent()
+    {
+        // a duplicate lookup by racing threads returns the same singleton, or an equivalent instance otherwise
+        Object component = this.component;
+        if ( component == null )
+        {
+            Thread thread = Thread.currentThread();
+            ClassLoader oldClassLoader = thread.getContextClassLoader();
+            thread.setContextClassLoader( classLoader );
+            ClassRealm oldLookupRealm = container.setLookupRealm( lookupRealm );
+            try
+            {
+                component = container.lookup( roleType, requirement.getRoleHint() );
+            }
+            catch ( ComponentLookupException e )
+            {
+                throw new IllegalStateException( "Unable to resolve lazy requirement " + requirement.getRole() + ":" +
+                    requirement.getRoleHint() + ": " + e.getMessage(), e );
+            }
+            finally
+            {
+                container.setLookupRealm( oldLookupRealm );
+                thread.setContextClassLoader( oldClassLoader );
+            }
+            this.component = component;
+        }
+        return component;
+    }
+}
@@ -47,6 +47,7 @@ import org.codehaus.plexus.component.factory.UndefinedComponentFactoryException;
 import org.codehaus.plexus.component.factory.java.JavaComponentFactory;
 import org.codehaus.plexus.component.manager.ComponentManager;
 import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.ComponentDescriptorListener;
 import org.codehaus.plexus.component.repository.ComponentRequirement;
 import org.codehaus.plexus.component.repository.ComponentRequirementList;
 import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
@@ -57,17 +58,44 @@ import org.codehaus.plexus.logging.Logger;
 import org.codehaus.plexus.personality.plexus.lifecycle.phase.PhaseExecutionException;
 import org.codehaus.plexus.util.StringUtils;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class XBeanComponentBuilder<T> implements ComponentBuilder<T> {
     private ComponentManager<T> componentManager;
 
+    private volatile RecipeTemplate recipeTemplate;
+
+    private volatile ResolvedFactory resolvedFactory;
+
+    /**
+     * Incremented when a configurator or factory named by the descriptor is added or removed, which invalidates
+     * the resolutions made before
+     */
+    private final AtomicInteger resolutionGeneration = new AtomicInteger();
+
+    private boolean watchingResolutions;
+
+    /**
+     * The listeners this builder registered with the container; guarded by this
+     */
+    private final List<ComponentDescriptorListener<?>> listeners = new ArrayList<ComponentDescriptorListener<?>>();
+
+    /**
+     * Guarded by this
+     */
+    private boolean disposed;
+
     public XBeanComponentBuilder() {
     }
 
@@ -119,7 +147,7 @@ public class XBeanComponentBuilder<T> implements ComponentBuilder<T> {
             ObjectRecipe recipe = createObjectRecipe(descriptor, realm);
 
             T instance;
-            ComponentFactory componentFactory = container.getComponentFactoryManager().findComponentFactory(descriptor.getComponentFactory());
+            ComponentFactory componentFactory = getComponentFactory(descriptor);
             if (JavaComponentFactory.class.equals(componentFactory.getClass())) {
                 // xbean-reflect will create object and do injection
                 instance = (T) recipe.create();
@@ -140,24 +168,7 @@ public class XBeanComponentBuilder<T> implements ComponentBuilder<T> {
         }
         catch ( ConstructionException e )
         {
-            Throwable cause = unwrapConstructionException( e );
-
-            // do not rewrap
-            if (cause instanceof ComponentInstantiationException)
-            {
-                throw (ComponentInstantiationException) cause;
-            }
-
-            // reuse original exception message.. the ones from XBean contain a lot of information
-            if ( cause != null )
-            {
-                // wrap real cause if we got one
-                throw new ComponentInstantiationException( e.getMessage(), cause );
-            }
-            else
-            {
-                throw new ComponentInstantiationException( e.getMessage() );
-            }
+            throw toComponentInstantiationException( e );
         }
         catch ( UndefinedComponentFactoryException e )
         {
@@ -170,27 +181,100 @@ public class XBeanComponentBuilder<T> implements ComponentBuilder<T> {
     }
 
     public ObjectRecipe createObjectRecipe(ComponentDescriptor<T> descriptor, ClassRealm realm) throws ComponentInstantiationException {
-        String factoryMethod = null;
-        String[] constructorArgNames = null;
-        Class[] constructorArgTypes = null;
+        return getRecipeTemplate(descriptor).newObjectRecipe();
+    }
 
-        ObjectRecipe recipe = new ObjectRecipe(descriptor.getImplementationClass(),
-                factoryMethod,
-                constructorArgNames,
-                constructorArgTypes);
-        recipe.allow(Option.FIELD_INJECTION);
-        recipe.allow(Option.PRIVATE_PROPERTIES);
+    /**
+     * Gets the compiled recipe template of the descriptor.  The template is compiled on first use and reused for
+     * every instance this builder creates, so the descriptor must not change once its components are created.
+     */
+    RecipeTemplate getRecipeTemplate(ComponentDescriptor<T> descriptor) throws ComponentInstantiationException {
+        RecipeTemplate recipeTemplate = this.recipeTemplate;
+        if (recipeTemplate == null || recipeTemplate.descriptor != descriptor || recipeTemplate.generation != resolutionGeneration.get()) {
+            // racing threads compile equivalent templates, so the last one published wins
+            int generation = startResolution(descriptor);
+            recipeTemplate = compileRecipeTemplate(descriptor, generation);
+            this.recipeTemplate = recipeTemplate;
+        }
+        return recipeTemplate;
+    }
+
+    /**
+     * Gets the component factory of the descriptor.  The factory is resolved on first use, and again when a factory
+     * with the id named by the descriptor is added or removed.
+     */
+    private ComponentFactory getComponentFactory(ComponentDescriptor<T> descriptor) throws UndefinedComponentFactoryException {
+        ResolvedFactory resolvedFactory = this.resolvedFactory;
+        if (resolvedFactory == null || resolvedFactory.descriptor != descriptor || resolvedFactory.generation != resolutionGeneration.get()) {
+            int generation = startResolution(descriptor);
+            ComponentFactory componentFactory = getContainer().getComponentFactoryManager().findComponentFactory(descriptor.getComponentFactory());
+            resolvedFactory = new ResolvedFactory(descriptor, generation, componentFactory);
+            this.resolvedFactory = resolvedFactory;
+        }
+        return resolvedFactory.componentFactory;
+    }
+
+    /**
+     * Starts watching the configurator and factory named by the descriptor, if it names any, so their resolutions
+     * are invalidated when they change.
+     * @return the generation of the resolutions about to be made
+     */
+    private int startResolution(ComponentDescriptor<T> descriptor) {
+        if (componentManager != null) {
+            synchronized (this) {
+                if (!watchingResolutions) {
+                    watchingResolutions = true;
+
+                    // listen before resolving, so a change made during the resolution is not missed
+                    String configuratorId = descriptor.getComponentConfigurator();
+                    if (StringUtils.isNotEmpty(configuratorId)) {
+                        addListener(new ResolutionListener<ComponentConfigurator>(resolutionGeneration, getContainer(), ComponentConfigurator.class, configuratorId));
+                    }
+                    String factoryId = descriptor.getComponentFactory();
+                    if (factoryId != null && !factoryId.equals("java")) {
+                        addListener(new ResolutionListener<ComponentFactory>(resolutionGeneration, getContainer(), ComponentFactory.class, factoryId));
+                    }
+                }
+            }
+        }
+        return resolutionGeneration.get();
+    }
+
+    /**
+     * Registers a listener with the container until this builder is disposed.
+     */
+    private synchronized void addListener(ComponentDescriptorListener<?> listener) {
+        if (!disposed) {
+            listeners.add(listener);
+            getContainer().addComponentDescriptorListener(listener);
+        }
+    }
+
+    /**
+     * Removes the listeners this builder registered with the container, so they no longer reference the roles of
+     * the component.  Called when the component manager is disposed.
+     */
+    public synchronized void dispose() {
+        disposed = true;
+        for (ComponentDescriptorListener<?> listener : listeners) {
+            getContainer().removeComponentDescriptorListener(listener);
+        }
+        listeners.clear();
+    }
+
+    private RecipeTemplate compileRecipeTemplate(ComponentDescriptor<T> descriptor, int generation) throws ComponentInstantiationException {
+        List<RecipeProperty> properties = new ArrayList<RecipeProperty>();
 
         // MapOrientedComponents don't get normal injection
         if (!MapOrientedComponent.class.isAssignableFrom(descriptor.getImplementationClass())) {
             for (ComponentRequirement requirement : descriptor.getRequirements() ) {
                 String name = requirement.getFieldName();
-                RequirementRecipe requirementRecipe = new RequirementRecipe(descriptor, requirement, getContainer(), name == null);
+                RequirementRecipe requirementRecipe = new RequirementRecipe(descriptor, requirement, getContainer(), name == null, this);
 
                 if (name != null) {
-                    recipe.setProperty(name, requirementRecipe);
+                    properties.add(new RecipeProperty(name, requirementRecipe, false));
                 } else {
-                    recipe.setAutoMatchProperty(requirement.getRole(), requirementRecipe);
+                    properties.add(new RecipeProperty(requirement.getRole(), requirementRecipe, true));
                 }
             }
 
@@ -206,24 +290,24 @@ public class XBeanComponentBuilder<T> implements ComponentBuilder<T> {
                             throw new ComponentInstantiationException("Error getting value for attribute " + name, e);
                         }
                         name = fromXML(name);
-                        recipe.setProperty(name, value);
+                        properties.add(new RecipeProperty(name, value, false));
                     }
                     for (PlexusConfiguration child : configuration.getChildren()) {
                         String name = child.getName();
                         name = fromXML(name);
                         if ( child.getChildCount() > 0 )
                         {
-                            recipe.setProperty( name, new PlexusConfigurationRecipe( child ) );
+                            properties.add(new RecipeProperty(name, new PlexusConfigurationRecipe( child ), false));
                         }
                         else if ( StringUtils.isNotEmpty( child.getValue() ) )
                         {
-                            recipe.setProperty( name, child.getValue() );
+                            properties.add(new RecipeProperty(name, child.getValue(), false));
                         }
                     }
                 }
             }
         }
-        return recipe;
+        return new RecipeTemplate(descriptor, generation, properties.toArray(new RecipeProperty[properties.size()]));
     }
 
     protected boolean shouldConfigure( ComponentDescriptor<T> descriptor ) {
@@ -261,17 +345,144 @@ public class XBeanComponentBuilder<T> implements ComponentBuilder<T> {
         }
     }
 
+    /**
+     * The properties of the ObjectRecipe of a descriptor, compiled once.  The nested recipes do not keep state
+     * between creations, so they are shared by every ObjectRecipe created from the template.
+     */
+    static final class RecipeTemplate {
+        final ComponentDescriptor<?> descriptor;
+        final int generation;
+        final RecipeProperty[] properties;
+
+        private RecipeTemplate(ComponentDescriptor<?> descriptor, int generation, RecipeProperty[] properties) {
+            this.descriptor = descriptor;
+            this.generation = generation;
+            this.properties = properties;
+        }
+
+        private ObjectRecipe newObjectRecipe() {
+            String factoryMethod = null;
+            String[] constructorArgNames = null;
+            Class[] constructorArgTypes = null;
+
+            ObjectRecipe recipe = new ObjectRecipe(descriptor.getImplementationClass(),
+                    factoryMethod,
+                    constructorArgNames,
+                    constructorArgTypes);
+            recipe.allow(Option.FIELD_INJECTION);
+            recipe.allow(Option.PRIVATE_PROPERTIES);
+
+            for (RecipeProperty property : properties) {
+                if (property.autoMatch) {
+                    recipe.setAutoMatchProperty(property.name, property.value);
+                } else {
+                    recipe.setProperty(property.name, property.value);
+                }
+            }
+            return recipe;
+        }
+    }
+
+    private static final class ResolvedFactory {
+        private final ComponentDescriptor<?> descriptor;
+        private final int generation;
+        private final ComponentFactory componentFactory;
+
+        private ResolvedFactory(ComponentDescriptor<?> descriptor, int generation, ComponentFactory componentFactory) {
+            this.descriptor = descriptor;
+            this.generation = generation;
+            this.componentFactory = componentFactory;
+        }
+    }
+
+    /**
+     * Invalidates resolutions made from the registry when a component they depend on is added or removed, by
+     * incrementing their generation.  The generation is only weakly referenced, and the listener removes itself once
+     * the generation, and so its owner, has been collected.
+     */
+    private static final class ResolutionListener<C> implements ComponentDescriptorListener<C> {
+        private final WeakReference<AtomicInteger> generation;
+        private final MutablePlexusContainer container;
+        private final Class<C> type;
+        private final List<String> roleHints;
+
+        private ResolutionListener(AtomicInteger generation, MutablePlexusContainer container, Class<C> type, String roleHint) {
+            this.generation = new WeakReference<AtomicInteger>(generation);
+            this.container = container;
+            this.type = type;
+            this.roleHints = roleHint == null ? null : Collections.singletonList(roleHint);
+        }
+
+        public Class<C> getType() {
+            return type;
+        }
+
+        public List<String> getRoleHints() {
+            return roleHints;
+        }
+
+        public void componentDescriptorAdded(ComponentDescriptor<? extends C> componentDescriptor) {
+            invalidate();
+        }
+
+        public void componentDescriptorRemoved(ComponentDescriptor<? extends C> componentDescriptor) {
+            invalidate();
+        }
+
+        private void invalidate() {
+            AtomicInteger generation = this.generation.get();
+            if (generation != null) {
+                generation.incrementAndGet();
+            } else {
+                container.removeComponentDescriptorListener(this);
+            }
+        }
+    }
+
+    static final class RecipeProperty {
+        final String name;
+        final Object value;
+        final boolean autoMatch;
+
+        private RecipeProperty(String name, Object value, boolean autoMatch) {
+            this.name = name;
+            this.value = value;
+            this.autoMatch = autoMatch;
+        }
+    }
+
     public static class RequirementRecipe<T> extends AbstractRecipe {
         private ComponentDescriptor<T> componentDescriptor;
         private ComponentRequirement requirement;
         private MutablePlexusContainer container;
         private boolean autoMatch;
 
+        /**
+         * Incremented when a component of the required role and hint is added or removed
+         */
+        private final AtomicInteger candidateGeneration = new AtomicInteger();
+        private volatile AutowireCandidates candidates;
+
+        /**
+         * The role types whose components are watched; guarded by this
+         */
+        private final Set<Class<?>> watchedRoleTypes = new HashSet<Class<?>>();
+
+        /**
+         * The builder the listeners are registered through, or null if they are registered with the container
+         */
+        private final XBeanComponentBuilder<?> builder;
+
         public RequirementRecipe(ComponentDescriptor<T> componentDescriptor, ComponentRequirement requirement, MutablePlexusContainer container, boolean autoMatch) {
+            this(componentDescriptor, requirement, container, autoMatch, null);
+        }
+
+        RequirementRecipe(ComponentDescriptor<T> componentDescriptor, ComponentRequirement requirement, MutablePlexusContainer container, boolean autoMatch, XBeanComponentBuilder<?> builder) {
             this.componentDescriptor = componentDescriptor;
             this.requirement = requirement;
             this.container = container;
             this.autoMatch = autoMatch;
+            this.builder = builder;
         }
 
         public boolean canCreate(Type expectedType) {
@@ -288,22 +499,65 @@ public class XBeanComponentBuilder<T> implements ComponentBuilder<T> {
             }
 
             // if the type to be created is an instance of the expected type, return true
-            try {
+            return getAutowireCandidates().canBind( propertyType );
+        }
 
-                String roleHint = requirement.getRoleHint();
-                Class<?> roleType = getInterfaceClass( container, requirement.getRole(), roleHint );
+        /**
+         * Gets the implementations that can be injected for the requirement.  They are found, together with the role
+         * class, once, and again when a component of the required role and hint is added or removed.
+         */
+        private AutowireCandidates getAutowireCandidates()
+        {
+            AutowireCandidates candidates = this.candidates;
+            if ( candidates == null || candidates.generation != candidateGeneration.get() )
+            {
+                Class<?> roleType = getInterfaceClass( container, requirement.getRole(), requirement.getRoleHint() );
+                watchCandidates( roleType );
 
-                for ( ComponentDescriptor<?> descriptor : container.getComponentDescriptorList( roleType ) )
+                int generation = candidateGeneration.get();
+                String roleHint = requirement.getRoleHint();
+                List<Class<?>> implementations = new ArrayList<Class<?>>();
+                try
                 {
-                    if ( descriptor.getRoleHint().equals( roleHint ) && isAssignableFrom( propertyType, descriptor.getImplementationClass() ) )
+                    for ( ComponentDescriptor<?> descriptor : container.getComponentDescriptorList( roleType ) )
                     {
-                        return true;
+                        if ( descriptor.getRoleHint().equals( roleHint ) )
+                        {
+                            implementations.add( descriptor.getImplementationClass() );
+                        }
                     }
                 }
-            } catch (Exception e) {
+                catch ( Exception e )
+                {
+                    implementations = null;
+                }
+
+                candidates = new AutowireCandidates( roleType, generation, implementations );
+                this.candidates = candidates;
             }
+            return candidates;
+        }
 
-            return false;
+        private <C> void watchCandidates( Class<C> roleType )
+        {
+            synchronized ( this )
+            {
+                if ( !watchedRoleTypes.add( roleType ) )
+                {
+                    return;
+                }
+            }
+
+            // listen before resolving, so a change made during the resolution is not missed
+            ResolutionListener<C> listener = new ResolutionListener<C>( candidateGeneration, container, roleType, requirement.getRoleHint() );
+            if ( builder != null )
+            {
+                builder.addListener( listener );
+            }
+            else
+            {
+                container.addComponentDescriptorListener( listener );
+            }
         }
 
         @Override
@@ -410,6 +664,10 @@ public class XBeanComponentBuilder<T> implements ComponentBuilder<T> {
                         // todo magic reference types should not be handled here
                         assignment = container;
                     }
+                    else if ( propertyType.isInterface() && ( requirement.isLazy() || container.isLazyRequirements() ) )
+                    {
+                        assignment = LazyRequirement.newProxy( container, propertyType, roleType, requirement );
+                    }
                     else
                     {
                         String roleHint = requirement.getRoleHint();
@@ -436,6 +694,52 @@ public class XBeanComponentBuilder<T> implements ComponentBuilder<T> {
         }
     }
 
+    /**
+     * The role class and the implementations of the role and hint of an auto matched requirement, with the property
+     * types they have been found to be assignable to or not.
+     */
+    private static final class AutowireCandidates
+    {
+        private final Class<?> roleType;
+        private final int generation;
+        private final List<Class<?>> implementations;
+        private final ConcurrentMap<Class<?>, Boolean> bindable = new ConcurrentHashMap<Class<?>, Boolean>();
+
+        /**
+         * @param implementations the implementations, or null if they could not be found
+         */
+        private AutowireCandidates( Class<?> roleType, int generation, List<Class<?>> implementations )
+        {
+            this.roleType = roleType;
+            this.generation = generation;
+            this.implementations = implementations;
+        }
+
+        private boolean canBind( Class<?> propertyType )
+        {
+            if ( implementations == null )
+            {
+                return false;
+            }
+
+            Boolean canBind = bindable.get( propertyType );
+            if ( canBind == null )
+            {
+                canBind = Boolean.FALSE;
+                for ( Class<?> implementation : implementations )
+                {
+                    if ( isAssignableFrom( propertyType, implementation ) )
+                    {
+                        canBind = Boolean.TRUE;
+                        break;
+                    }
+                }
+                bindable.put( propertyType, canBind );
+            }
+            return canBind.booleanValue();
+        }
+    }
+
     private class PlexusConfigurationRecipe extends AbstractRecipe
     {
         private final PlexusConfiguration child;
@@ -627,4 +931,26 @@ public class XBeanComponentBuilder<T> implements ComponentBuilder<T> {
         }
         return cause;
     }
+
+    static ComponentInstantiationException toComponentInstantiationException( ConstructionException e )
+    {
+        Throwable cause = unwrapConstructionException( e );
+
+        // do not rewrap
+        if (cause instanceof ComponentInstantiationException)
+        {
+            return (ComponentInstantiationException) cause;
+        }
+
+        // reuse original exception message.. the ones from XBean contain a lot of information
+        if ( cause != null )
+        {
+            // wrap real cause if we got one
+            return new ComponentInstantiationException( e.getMessage(), cause );
+        }
+        else
+        {
+            return new ComponentInstantiationException( e.getMessage() );
+        }
+    }
 }
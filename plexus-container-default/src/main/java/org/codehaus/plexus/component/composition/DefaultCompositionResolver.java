@@ -41,6 +41,9 @@ public class DefaultCompositionResolver
     {
         String key = getDAGKey( componentDescriptor.getRole(), componentDescriptor.getRoleHint() );
 
+        // components without requirements are vertices too, so their requirements can be queried
+        dag.addVertex( key );
+
         List<ComponentRequirement> requirements = componentDescriptor.getRequirements();
 
         for ( ComponentRequirement requirement : requirements )
@@ -16,13 +16,13 @@ package org.codehaus.plexus.component.configurator.converters;
  * limitations under the License.
  */
 
+import org.codehaus.plexus.component.InjectionPlan;
 import org.codehaus.plexus.component.configurator.ComponentConfigurationException;
 import org.codehaus.plexus.component.configurator.ConfigurationListener;
 import org.codehaus.plexus.component.configurator.converters.lookup.ConverterLookup;
 import org.codehaus.plexus.component.configurator.converters.lookup.DefaultConverterLookup;
 import org.codehaus.plexus.component.configurator.expression.ExpressionEvaluator;
 import org.codehaus.plexus.configuration.PlexusConfiguration;
-import org.codehaus.plexus.util.ReflectionUtils;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -76,9 +76,11 @@ public class ComponentValueSetter
             throw new ComponentConfigurationException( "Component is null" );
         }
 
-        initSetter();
+        InjectionPlan plan = InjectionPlan.forClass( object.getClass() );
 
-        initField();
+        initSetter( plan );
+
+        initField( plan );
 
         if ( setter == null && field == null )
         {
@@ -94,9 +96,9 @@ public class ComponentValueSetter
         }
     }
 
-    private void initSetter()
+    private void initSetter( InjectionPlan plan )
     {
-        setter = ReflectionUtils.getSetter( fieldName, object.getClass() );
+        setter = plan.getSetter( fieldName );
 
         if ( setter == null )
         {
@@ -115,9 +117,9 @@ public class ComponentValueSetter
         }
     }
 
-    private void initField()
+    private void initField( InjectionPlan plan )
     {
-        field = ReflectionUtils.getFieldByNameIncludingSuperclasses( fieldName, object.getClass() );
+        field = plan.getField( fieldName );
 
         if ( field == null )
         {
@@ -141,24 +143,13 @@ public class ComponentValueSetter
     {
         try
         {
-            boolean wasAccessible = field.isAccessible();
-
-            if ( !wasAccessible )
-            {
-                field.setAccessible( true );
-            }
-
             if ( listener != null )
             {
                 listener.notifyFieldChangeUsingReflection( fieldName, value, object );
             }
 
+            // the field of the injection plan is already accessible
             field.set( object, value );
-
-            if ( !wasAccessible )
-            {
-                field.setAccessible( false );
-            }
         }
         catch ( IllegalAccessException e )
         {
@@ -17,7 +17,9 @@ package org.codehaus.plexus.component.manager;
 */
 
 import org.codehaus.plexus.MutablePlexusContainer;
+import org.codehaus.plexus.component.WeakIdentityMap;
 import org.codehaus.plexus.component.builder.ComponentBuilder;
+import org.codehaus.plexus.component.builder.InjectorComponentBuilder;
 import org.codehaus.plexus.component.builder.XBeanComponentBuilder;
 import org.codehaus.plexus.component.factory.ComponentInstantiationException;
 import org.codehaus.plexus.component.repository.ComponentDescriptor;
@@ -25,18 +27,29 @@ import org.codehaus.plexus.component.repository.exception.ComponentLifecycleExce
 import org.codehaus.plexus.lifecycle.LifecycleHandler;
 import org.codehaus.plexus.personality.plexus.lifecycle.phase.PhaseExecutionException;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 public abstract class AbstractComponentManager<T> implements ComponentManager<T>
 {
     private final MutablePlexusContainer container;
 
     private final ComponentDescriptor<T> componentDescriptor;
 
-    private final ComponentBuilder<T> builder = new XBeanComponentBuilder<T>( this );
+    private final ComponentBuilder<T> builder;
 
     private final LifecycleHandler lifecycleHandler;
 
     private long startId;
 
+    /**
+     * The asynchronous starts that have not completed successfully; failed starts are kept, so every lookup of the
+     * instance reports the failure.  A start does not reference its component once it has run, so a failed start is
+     * forgotten when the component is collected.
+     */
+    private final WeakIdentityMap<Object, Start> starting = new WeakIdentityMap<Object, Start>();
+
     public AbstractComponentManager( MutablePlexusContainer container,
                                      LifecycleHandler lifecycleHandler,
                                      ComponentDescriptor<T> componentDescriptor )
@@ -58,6 +71,15 @@ public abstract class AbstractComponentManager<T> implements ComponentManager<T>
             throw new NullPointerException( "componentDescriptor is null" );
         }
         this.componentDescriptor = componentDescriptor;
+
+        if ( container.isPrecompiledInjection() )
+        {
+            builder = new InjectorComponentBuilder<T>( this );
+        }
+        else
+        {
+            builder = new XBeanComponentBuilder<T>( this );
+        }
     }
 
     public ComponentDescriptor<T> getComponentDescriptor()
@@ -70,6 +92,26 @@ public abstract class AbstractComponentManager<T> implements ComponentManager<T>
         return lifecycleHandler;
     }
 
+    /**
+     * Gets the builder creating the instances of the component.
+     */
+    public ComponentBuilder<T> getComponentBuilder()
+    {
+        return builder;
+    }
+
+    /**
+     * Removes the listeners the builder of this manager registered with the container.  Subclasses must call this
+     * method when they are disposed.
+     */
+    public void dispose() throws ComponentLifecycleException
+    {
+        if ( builder instanceof XBeanComponentBuilder )
+        {
+            ( (XBeanComponentBuilder<T>) builder ).dispose();
+        }
+    }
+
     protected T createInstance() throws ComponentInstantiationException, ComponentLifecycleException
     {
         return builder.build( componentDescriptor, componentDescriptor.getRealm(), null );
@@ -77,6 +119,21 @@ public abstract class AbstractComponentManager<T> implements ComponentManager<T>
 
     protected void destroyInstance( Object component ) throws ComponentLifecycleException
     {
+        // do not end the lifecycle of a component while it is still starting
+        Start start = starting.remove( component );
+        if ( start != null )
+        {
+            // the lifecycle is ended even if the start failed, to release what the component acquired before failing
+            try
+            {
+                start.completed.await();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
         try
         {
             lifecycleHandler.end( component, this, componentDescriptor.getRealm() );
@@ -94,7 +151,56 @@ public abstract class AbstractComponentManager<T> implements ComponentManager<T>
     public void start( Object component ) throws PhaseExecutionException
     {
         startId = NEXT_START_ID.getAndIncrement();
-        getLifecycleHandler().start( component,  this, componentDescriptor.getRealm() );
+
+        Executor executor = componentDescriptor.isAsyncStart() ? container.getStartExecutor() : null;
+        if ( executor == null )
+        {
+            getLifecycleHandler().start( component,  this, componentDescriptor.getRealm() );
+            return;
+        }
+
+        Start start = new Start( component, Thread.currentThread().getContextClassLoader() );
+
+        // registered before it can complete, so a successful start is always removed
+        starting.put( component, start );
+        try
+        {
+            executor.execute( start );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            start.run();
+        }
+    }
+
+    public void awaitStarted( Object component ) throws ComponentLifecycleException
+    {
+        Start start = starting.get( component );
+        if ( start == null )
+        {
+            return;
+        }
+
+        try
+        {
+            start.completed.await();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new ComponentLifecycleException( "Interrupted while waiting for the component to start" );
+        }
+
+        if ( start.failure != null )
+        {
+            Throwable cause = start.failure;
+            // if we got a PhaseExecutionException, unwrap it
+            if ( cause instanceof PhaseExecutionException && cause.getCause() != null )
+            {
+                cause = cause.getCause();
+            }
+            throw new ComponentLifecycleException( "Error invoking start method", cause );
+        }
     }
 
     /**
@@ -109,4 +215,53 @@ public abstract class AbstractComponentManager<T> implements ComponentManager<T>
     {
         return container;
     }
+
+    /**
+     * An asynchronous start of a component.
+     */
+    private final class Start
+        implements Runnable
+    {
+        private final ClassLoader classLoader;
+
+        private final CountDownLatch completed = new CountDownLatch( 1 );
+
+        /**
+         * The component to start; cleared when the start runs
+         */
+        private Object component;
+
+        private volatile Throwable failure;
+
+        private Start( Object component, ClassLoader classLoader )
+        {
+            this.component = component;
+            this.classLoader = classLoader;
+        }
+
+        public void run()
+        {
+            Object component = this.component;
+            this.component = null;
+
+            Thread thread = Thread.currentThread();
+            ClassLoader oldClassLoader = thread.getContextClassLoader();
+            thread.setContextClassLoader( classLoader );
+            try
+            {
+                getLifecycleHandler().start( component, AbstractComponentManager.this, componentDescriptor.getRealm() );
+                starting.remove( component, this );
+            }
+            catch ( Throwable e )
+            {
+                // keep the failed start, so lookups report it
+                failure = e;
+            }
+            finally
+            {
+                thread.setContextClassLoader( oldClassLoader );
+                completed.countDown();
+            }
+        }
+    }
 }
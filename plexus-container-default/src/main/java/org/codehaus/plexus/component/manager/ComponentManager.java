@@ -62,6 +62,14 @@ public interface ComponentManager<T>
 
     void start(Object component) throws PhaseExecutionException;
 
+    /**
+     * Waits until the lifecycle of the component has been started.  Returns immediately unless the component has an
+     * asynchronous start that has not completed.
+     *
+     * @throws ComponentLifecycleException if the component could not be started
+     */
+    void awaitStarted( Object component ) throws ComponentLifecycleException;
+
     /**
      * @deprecated for internal use only.. will be removed
      */
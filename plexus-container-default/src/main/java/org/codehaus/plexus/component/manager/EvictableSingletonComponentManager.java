@@ -0,0 +1,383 @@
+package org.codehaus.plexus.component.manager;
+
+/*
+ * Copyright 2001-2006 Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.codehaus.plexus.MutablePlexusContainer;
+import org.codehaus.plexus.component.factory.ComponentInstantiationException;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
+import org.codehaus.plexus.lifecycle.LifecycleHandler;
+
+import java.lang.ref.SoftReference;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A singleton that is destroyed when it is not needed, and transparently created again by the next lookup.  The
+ * singleton is destroyed once it has not been looked up for the idle timeout of the descriptor, and, if the descriptor
+ * asks for it, when the garbage collector runs short of memory.
+ *
+ * Memory pressure is detected with a soft referenced marker object, so the singleton itself is only ever released
+ * through its lifecycle.  Eviction is checked by the eviction executor of the container, so an idle singleton is
+ * destroyed between one and two idle timeouts after its last lookup.
+ *
+ * A destroyed singleton is not replaced in the components that already hold it, so evictable singletons should be
+ * looked up for each use rather than injected as requirements.
+ *
+ * @see ComponentDescriptor#getEvictionIdleTimeout()
+ * @see ComponentDescriptor#isEvictOnMemoryPressure()
+ */
+public class EvictableSingletonComponentManager<T>
+    extends AbstractComponentManager<T>
+{
+    /**
+     * How often a singleton that is only evicted under memory pressure is checked, in milliseconds.
+     */
+    private static final long MEMORY_PRESSURE_CHECK_INTERVAL = 1000;
+
+    private final long idleTimeout;
+
+    private final boolean evictOnMemoryPressure;
+
+    /**
+     * Guarded by this
+     */
+    private boolean disposed;
+
+    /**
+     * The creation of the current singleton; guarded by this
+     */
+    private FutureTask<T> singletonFuture;
+
+    /**
+     * The singleton once it has been successfully created.  This is read without locking, so lookups of an existing
+     * singleton never block; it is only written while holding the lock.
+     */
+    private volatile Singleton<T> singleton;
+
+    private final ScheduledExecutorService evictor;
+
+    private final ScheduledFuture<?> evictionCheck;
+
+    private final AtomicLong creations = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    public EvictableSingletonComponentManager( MutablePlexusContainer container,
+                                               LifecycleHandler lifecycleHandler,
+                                               ComponentDescriptor<T> componentDescriptor )
+    {
+        super( container, lifecycleHandler, componentDescriptor );
+
+        idleTimeout = componentDescriptor.getEvictionIdleTimeout();
+        evictOnMemoryPressure = componentDescriptor.isEvictOnMemoryPressure();
+
+        if ( idleTimeout > 0 || evictOnMemoryPressure )
+        {
+            long interval = idleTimeout > 0 ? idleTimeout : MEMORY_PRESSURE_CHECK_INTERVAL;
+            evictor = container.getEvictionExecutor();
+            evictionCheck = evictor.scheduleWithFixedDelay( new Runnable()
+            {
+                public void run()
+                {
+                    evictIfUnused();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS );
+        }
+        else
+        {
+            evictor = null;
+            evictionCheck = null;
+        }
+    }
+
+    public T getComponent() throws ComponentInstantiationException, ComponentLifecycleException
+    {
+        for ( ;; )
+        {
+            // fast path: the singleton has already been created and published
+            Singleton<T> singleton = this.singleton;
+            if ( singleton != null )
+            {
+                singleton.lastLookup = System.currentTimeMillis();
+                return singleton.instance;
+            }
+
+            FutureTask<T> singletonFuture;
+            boolean create = false;
+            synchronized ( this )
+            {
+                if ( disposed )
+                {
+                    throw new ComponentLifecycleException( "This ComponentManager has already been destroyed" );
+                }
+
+                singletonFuture = this.singletonFuture;
+                if ( singletonFuture == null )
+                {
+                    singletonFuture = new FutureTask<T>( new Callable<T>()
+                    {
+                        public T call() throws Exception
+                        {
+                            return createInstance();
+                        }
+                    } );
+                    this.singletonFuture = singletonFuture;
+                    create = true;
+                }
+            }
+
+            // do not create the instance inside of a synchronized block because createInstance results in
+            // several callbacks to user code which could result in a dead lock
+            if ( create )
+            {
+                singletonFuture.run();
+            }
+
+            T instance;
+            try
+            {
+                instance = singletonFuture.get();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new ComponentLifecycleException( "Interrupted while waiting for the singleton to be created" );
+            }
+            catch ( ExecutionException e )
+            {
+                synchronized ( this )
+                {
+                    // only clear if still refering to this method's future
+                    if ( this.singletonFuture == singletonFuture )
+                    {
+                        this.singletonFuture = null;
+                    }
+                }
+
+                Throwable cause = e.getCause();
+                if ( cause instanceof ComponentInstantiationException )
+                {
+                    throw (ComponentInstantiationException) cause;
+                }
+                if ( cause instanceof ComponentLifecycleException )
+                {
+                    throw (ComponentLifecycleException) cause;
+                }
+                throw new ComponentLifecycleException( "Unexpected error obtaining singleton instance", cause );
+            }
+
+            if ( create )
+            {
+                creations.incrementAndGet();
+            }
+
+            boolean evicted;
+            synchronized ( this )
+            {
+                // dispose waits for the creation, and destroys the instance
+                if ( disposed )
+                {
+                    throw new ComponentLifecycleException( "This ComponentManager has already been destroyed" );
+                }
+
+                // an instance that was published and then evicted while this thread waited has been destroyed
+                evicted = this.singletonFuture != singletonFuture;
+                if ( create && !evicted )
+                {
+                    this.singleton = new Singleton<T>( instance );
+                }
+            }
+
+            // look up again outside of the lock, since the lookup may create a new instance
+            if ( !evicted )
+            {
+                return instance;
+            }
+        }
+    }
+
+    public void release( Object component ) throws ComponentLifecycleException
+    {
+        T instance = clear();
+
+        // do not call destroyInstance inside of a synchronized block because
+        // destroyInstance results in several callbacks to user code which
+        // could result in a dead lock
+        if ( instance != null )
+        {
+            destroyInstance( instance );
+        }
+    }
+
+    public void dispose() throws ComponentLifecycleException
+    {
+        super.dispose();
+
+        if ( evictionCheck != null )
+        {
+            evictionCheck.cancel( false );
+            if ( evictor instanceof ThreadPoolExecutor )
+            {
+                // do not keep this manager queued until the next check is due
+                ( (ThreadPoolExecutor) evictor ).purge();
+            }
+        }
+
+        FutureTask<T> creation;
+        T instance;
+        synchronized ( this )
+        {
+            disposed = true;
+            creation = singleton == null ? singletonFuture : null;
+            singletonFuture = null;
+            instance = clear();
+        }
+
+        // the singleton being created is not published once this manager is disposed, so it is destroyed here
+        if ( creation != null )
+        {
+            try
+            {
+                instance = creation.get();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new ComponentLifecycleException( "Interrupted while waiting for the singleton to be created" );
+            }
+            catch ( ExecutionException e )
+            {
+                // nothing was created, so there is nothing to destroy
+            }
+        }
+
+        if ( instance != null )
+        {
+            destroyInstance( instance );
+        }
+    }
+
+    /**
+     * Destroys the singleton if it has been idle too long, or if memory is running short.
+     */
+    private void evictIfUnused()
+    {
+        T instance;
+        synchronized ( this )
+        {
+            Singleton<T> singleton = this.singleton;
+            if ( singleton == null || !singleton.isEvictable( idleTimeout, evictOnMemoryPressure ) )
+            {
+                return;
+            }
+            instance = clear();
+        }
+
+        if ( instance != null )
+        {
+            evictions.incrementAndGet();
+            try
+            {
+                destroyInstance( instance );
+            }
+            catch ( ComponentLifecycleException e )
+            {
+                getContainer().getLogger().warn( "Error destroying evicted singleton " +
+                    getComponentDescriptor().getHumanReadableKey(), e );
+            }
+        }
+    }
+
+    /**
+     * Clears the published singleton, so the next lookup creates a new one.  A singleton that is still being created
+     * is not cleared, since it is not known to any caller yet.
+     * @return the cleared singleton, or null if there was none
+     */
+    private synchronized T clear()
+    {
+        Singleton<T> singleton = this.singleton;
+        if ( singleton == null )
+        {
+            return null;
+        }
+        this.singleton = null;
+        this.singletonFuture = null;
+        return singleton.instance;
+    }
+
+    /**
+     * Gets the number of times the singleton has been destroyed by the eviction policy.
+     */
+    public long getEvictionCount()
+    {
+        return evictions.get();
+    }
+
+    /**
+     * Gets the number of times the singleton has been created again after the first creation.
+     */
+    public long getRecreationCount()
+    {
+        return Math.max( 0, creations.get() - 1 );
+    }
+
+    /**
+     * Does the singleton currently exist?
+     */
+    public boolean isInstantiated()
+    {
+        return singleton != null;
+    }
+
+    public String toString()
+    {
+        return "EvictableSingletonComponentManager[" + getComponentDescriptor().getImplementationClass().getName() + "]";
+    }
+
+    private static final class Singleton<T>
+    {
+        private final T instance;
+
+        /**
+         * Cleared by the garbage collector when memory runs short
+         */
+        private final SoftReference<Object> memoryPressure = new SoftReference<Object>( new Object() );
+
+        private volatile long lastLookup = System.currentTimeMillis();
+
+        private Singleton( T instance )
+        {
+            this.instance = instance;
+        }
+
+        private boolean isEvictable( long idleTimeout, boolean evictOnMemoryPressure )
+        {
+            if ( evictOnMemoryPressure && memoryPressure.get() == null )
+            {
+                return true;
+            }
+            return idleTimeout > 0 && System.currentTimeMillis() - lastLookup >= idleTimeout;
+        }
+    }
+}
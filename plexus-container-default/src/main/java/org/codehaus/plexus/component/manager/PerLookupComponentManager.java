@@ -16,21 +16,23 @@ package org.codehaus.plexus.component.manager;
  * limitations under the License.
  */
 
+import org.codehaus.plexus.component.WeakIdentityMap;
 import org.codehaus.plexus.component.factory.ComponentInstantiationException;
 import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
 import org.codehaus.plexus.component.repository.ComponentDescriptor;
 import org.codehaus.plexus.MutablePlexusContainer;
 import org.codehaus.plexus.lifecycle.LifecycleHandler;
 
-import java.util.Map;
-import java.util.Set;
-
-import com.google.common.collect.ReferenceMap;
-import static com.google.common.base.ReferenceType.WEAK;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Creates a new component manager for every lookup
  *
+ * Instances are tracked by identity with weak references, so they can be destroyed when the manager is disposed
+ * without being kept alive.  Untracked managers skip the tracking entirely; this is intended for components without
+ * end lifecycle phases, whose instances are simply left to the garbage collector.
+ *
  * @author Jason van Zyl
  *
  * @version $Id$
@@ -38,27 +40,44 @@ import static com.google.common.base.ReferenceType.WEAK;
 public class PerLookupComponentManager<T>
     extends AbstractComponentManager<T>
 {
-    private boolean disposed;
-    private final Map<T, T> instances = new ReferenceMap<T, T>( WEAK, WEAK);
-    
+    private volatile boolean disposed;
+
+    /**
+     * The live instances, or null if this manager does not track instances.
+     */
+    private final WeakIdentityMap<Object, Boolean> instances;
+
     public PerLookupComponentManager( MutablePlexusContainer container,
                                       LifecycleHandler lifecycleHandler,
                                       ComponentDescriptor<T> componentDescriptor )
+    {
+        this( container, lifecycleHandler, componentDescriptor, true );
+    }
+
+    public PerLookupComponentManager( MutablePlexusContainer container,
+                                      LifecycleHandler lifecycleHandler,
+                                      ComponentDescriptor<T> componentDescriptor,
+                                      boolean tracked )
     {
         super( container, lifecycleHandler, componentDescriptor );
+        instances = tracked ? new WeakIdentityMap<Object, Boolean>() : null;
     }
 
     public void dispose() throws ComponentLifecycleException
     {
-        Set<T> instances;
-        synchronized (this) {
-            disposed = true;
-            instances = this.instances.keySet();
-            this.instances.clear();
+        super.dispose();
+
+        disposed = true;
+
+        // untracked instances are left to the garbage collector
+        List<Object> instances = Collections.emptyList();
+        if ( this.instances != null )
+        {
+            instances = this.instances.clear();
         }
 
         ComponentLifecycleException componentLifecycleException = null;
-        for ( T instance : instances )
+        for ( Object instance : instances )
         {
             try
             {
@@ -75,18 +94,16 @@ public class PerLookupComponentManager<T>
             }
         }
 
-        if (componentLifecycleException == null) {
+        if (componentLifecycleException != null) {
             throw componentLifecycleException;
         }
     }
 
     public T getComponent( ) throws ComponentInstantiationException, ComponentLifecycleException
     {
-        synchronized (this) {
-            if (disposed)
-            {
-                throw new ComponentLifecycleException("This ComponentManager has already been destroyed");
-            }
+        if (disposed)
+        {
+            throw new ComponentLifecycleException("This ComponentManager has already been destroyed");
         }
 
         // do not call createInstance inside of a synchronized block because
@@ -94,10 +111,16 @@ public class PerLookupComponentManager<T>
         // could result in a dead lock
         T instance = createInstance();
 
-        synchronized (this) {
-            // if this manager has been destroyed during create, destroy newly
-            // created component
-            if (disposed)
+        if ( instances != null )
+        {
+            instances.put( instance, Boolean.TRUE );
+        }
+
+        // if this manager has been destroyed during create, destroy newly
+        // created component
+        if (disposed)
+        {
+            if ( instances == null || instances.remove( instance ) != null )
             {
                 try
                 {
@@ -107,11 +130,9 @@ public class PerLookupComponentManager<T>
                 {
                     // todo: log ignored exception
                 }
-
-                throw new ComponentLifecycleException("This ComponentManager has already been destroyed");
             }
 
-            instances.put(instance, instance);
+            throw new ComponentLifecycleException("This ComponentManager has already been destroyed");
         }
 
         return instance;
@@ -119,16 +140,19 @@ public class PerLookupComponentManager<T>
 
     public void release( Object component ) throws ComponentLifecycleException
     {
-        T instance;
-        synchronized (this) {
-            instance = instances.remove(component);
-        }
-
-        // do not call destroyInstance inside of a synchronized block because
-        // destroyInstance results in several callbacks to user code which
-        // could result in a dead lock
-        if (instance != null ) {
+        // untracked managers can not tell whether the instance is still live, but the registry only routes
+        // instances created by this manager here
+        if ( instances == null || instances.remove( component ) != null )
+        {
             destroyInstance( component );
         }
     }
+
+    /**
+     * Does this manager track its instances?
+     */
+    public boolean isTracked()
+    {
+        return instances != null;
+    }
 }
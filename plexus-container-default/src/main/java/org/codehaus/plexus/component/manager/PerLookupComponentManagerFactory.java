@@ -6,9 +6,28 @@ import org.codehaus.plexus.lifecycle.LifecycleHandler;
 
 public class PerLookupComponentManagerFactory implements ComponentManagerFactory
 {
+    private final String id;
+
+    private final boolean tracked;
+
+    public PerLookupComponentManagerFactory()
+    {
+        this( "per-lookup", true );
+    }
+
+    /**
+     * @param id the instantiation strategy id
+     * @param tracked should the created managers track their instances so they can be destroyed on dispose
+     */
+    public PerLookupComponentManagerFactory( String id, boolean tracked )
+    {
+        this.id = id;
+        this.tracked = tracked;
+    }
+
     public String getId()
     {
-        return "per-lookup";
+        return id;
     }
 
     @SuppressWarnings({"RawUseOfParameterizedType"})
@@ -16,6 +35,6 @@ public class PerLookupComponentManagerFactory implements ComponentManagerFactory
                                                        LifecycleHandler lifecycleHandler,
                                                        ComponentDescriptor<T> componentDescriptor )
     {
-        return new PerLookupComponentManager( container, lifecycleHandler, componentDescriptor );
+        return new PerLookupComponentManager( container, lifecycleHandler, componentDescriptor, tracked );
     }
 }
@@ -0,0 +1,197 @@
+package org.codehaus.plexus.component.manager;
+
+/*
+ * Copyright 2001-2006 Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.codehaus.plexus.MutablePlexusContainer;
+import org.codehaus.plexus.component.factory.ComponentInstantiationException;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
+import org.codehaus.plexus.lifecycle.LifecycleHandler;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates one instance per thread.  Every lookup from the same thread returns the same instance, and releasing the
+ * instance has no effect.
+ *
+ * The instances are tracked by weak references to their threads, rather than with a ThreadLocal, so a disposed
+ * manager is not kept alive by the threads that used it.  The instance of a thread is destroyed once the thread has
+ * ended and been garbage collected, the next time any thread looks up the component, or when the manager is
+ * disposed.
+ */
+public class PerThreadComponentManager<T>
+    extends AbstractComponentManager<T>
+{
+    /**
+     * Thread id -> Instance
+     */
+    private final ConcurrentMap<Long, ThreadInstance<T>> instances = new ConcurrentHashMap<Long, ThreadInstance<T>>();
+
+    private final ReferenceQueue<Thread> endedThreads = new ReferenceQueue<Thread>();
+
+    private volatile boolean disposed;
+
+    public PerThreadComponentManager( MutablePlexusContainer container,
+                                      LifecycleHandler lifecycleHandler,
+                                      ComponentDescriptor<T> componentDescriptor )
+    {
+        super( container, lifecycleHandler, componentDescriptor );
+    }
+
+    public T getComponent() throws ComponentInstantiationException, ComponentLifecycleException
+    {
+        if ( disposed )
+        {
+            throw new ComponentLifecycleException( "This ComponentManager has already been destroyed" );
+        }
+
+        destroyEndedThreadInstances();
+
+        // only the current thread adds or replaces its own instance, so there is no race between get and put
+        Thread thread = Thread.currentThread();
+        ThreadInstance<T> threadInstance = instances.get( thread.getId() );
+        if ( threadInstance != null )
+        {
+            if ( threadInstance.get() == thread )
+            {
+                return threadInstance.instance;
+            }
+
+            // the id has been reused, so the instance belongs to a thread that has ended
+            if ( instances.remove( threadInstance.threadId, threadInstance ) )
+            {
+                destroyQuietly( threadInstance.instance );
+            }
+        }
+
+        T instance = createInstance();
+        threadInstance = new ThreadInstance<T>( thread, instance, endedThreads );
+        instances.put( threadInstance.threadId, threadInstance );
+
+        // if this manager has been destroyed during create, destroy newly
+        // created component
+        if ( disposed )
+        {
+            if ( instances.remove( threadInstance.threadId, threadInstance ) )
+            {
+                destroyQuietly( instance );
+            }
+            throw new ComponentLifecycleException( "This ComponentManager has already been destroyed" );
+        }
+
+        return instance;
+    }
+
+    public void release( Object component ) throws ComponentLifecycleException
+    {
+        // the instance belongs to the thread, not to the caller
+    }
+
+    public void dispose() throws ComponentLifecycleException
+    {
+        super.dispose();
+
+        disposed = true;
+
+        List<T> instances = new ArrayList<T>();
+        for ( ThreadInstance<T> threadInstance : this.instances.values() )
+        {
+            if ( this.instances.remove( threadInstance.threadId, threadInstance ) )
+            {
+                instances.add( threadInstance.instance );
+            }
+        }
+
+        ComponentLifecycleException componentLifecycleException = null;
+        for ( T instance : instances )
+        {
+            try
+            {
+                destroyInstance( instance );
+            }
+            catch ( ComponentLifecycleException e )
+            {
+                if ( componentLifecycleException == null )
+                {
+                    componentLifecycleException = e;
+                }
+            }
+        }
+
+        if ( componentLifecycleException != null )
+        {
+            throw componentLifecycleException;
+        }
+    }
+
+    /**
+     * Gets the number of live instances.
+     */
+    public int getInstanceCount()
+    {
+        return instances.size();
+    }
+
+    private void destroyEndedThreadInstances()
+    {
+        for ( Object reference = endedThreads.poll(); reference != null; reference = endedThreads.poll() )
+        {
+            ThreadInstance<?> threadInstance = (ThreadInstance<?>) reference;
+            if ( instances.remove( threadInstance.threadId, threadInstance ) )
+            {
+                destroyQuietly( threadInstance.instance );
+            }
+        }
+    }
+
+    private void destroyQuietly( Object instance )
+    {
+        try
+        {
+            destroyInstance( instance );
+        }
+        catch ( ComponentLifecycleException e )
+        {
+            getContainer().getLogger().warn( "Error destroying per-thread instance of " +
+                getComponentDescriptor().getHumanReadableKey(), e );
+        }
+    }
+
+    public String toString()
+    {
+        return "PerThreadComponentManager[" + getComponentDescriptor().getImplementationClass().getName() + "]";
+    }
+
+    private static final class ThreadInstance<T> extends WeakReference<Thread>
+    {
+        private final Long threadId;
+
+        private final T instance;
+
+        private ThreadInstance( Thread thread, T instance, ReferenceQueue<Thread> endedThreads )
+        {
+            super( thread, endedThreads );
+            this.threadId = thread.getId();
+            this.instance = instance;
+        }
+    }
+}
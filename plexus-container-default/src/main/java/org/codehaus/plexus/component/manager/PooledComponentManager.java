@@ -0,0 +1,391 @@
+package org.codehaus.plexus.component.manager;
+
+/*
+ * Copyright 2001-2006 Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.codehaus.plexus.MutablePlexusContainer;
+import org.codehaus.plexus.component.WeakIdentityMap;
+import org.codehaus.plexus.component.factory.ComponentInstantiationException;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
+import org.codehaus.plexus.lifecycle.LifecycleHandler;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Suspendable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lends instances from a bounded pool.  A lookup borrows an idle instance or creates a new one, and releasing the
+ * instance returns it to the pool.  When all instances are in use, lookups block until an instance is released, or
+ * fail once the maximum wait of the descriptor has elapsed.
+ *
+ * Instances implementing {@link Suspendable} are suspended when they are returned and resumed when they are
+ * borrowed again.  Idle instances are destroyed once they have been idle longer than the idle timeout of the
+ * descriptor, but the pool always keeps the minimum number of idle instances.  Eviction runs when instances are
+ * returned, so no background thread is needed.
+ *
+ * An instance that is never released keeps its place in the pool, so pooled components must always be released.
+ *
+ * @see ComponentDescriptor#getPoolMaxSize()
+ * @see ComponentDescriptor#getPoolMinSize()
+ * @see ComponentDescriptor#getPoolMaxWait()
+ * @see ComponentDescriptor#getPoolIdleTimeout()
+ */
+public class PooledComponentManager<T>
+    extends AbstractComponentManager<T>
+{
+    private final int minSize;
+
+    private final int maxSize;
+
+    private final long maxWait;
+
+    private final long idleTimeout;
+
+    /**
+     * One permit per instance that may still be borrowed.
+     */
+    private final Semaphore available;
+
+    private final ConcurrentLinkedQueue<IdleInstance<T>> idle = new ConcurrentLinkedQueue<IdleInstance<T>>();
+
+    /**
+     * The size of the idle queue, which ConcurrentLinkedQueue can only compute by traversal.
+     */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    private final WeakIdentityMap<Object, Boolean> borrowed = new WeakIdentityMap<Object, Boolean>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong waits = new AtomicLong();
+
+    private volatile boolean disposed;
+
+    public PooledComponentManager( MutablePlexusContainer container,
+                                   LifecycleHandler lifecycleHandler,
+                                   ComponentDescriptor<T> componentDescriptor )
+    {
+        super( container, lifecycleHandler, componentDescriptor );
+
+        maxSize = componentDescriptor.getPoolMaxSize();
+        if ( maxSize < 1 )
+        {
+            throw new IllegalArgumentException( "pool max size must be at least 1: " + maxSize );
+        }
+        minSize = Math.max( 0, Math.min( componentDescriptor.getPoolMinSize(), maxSize ) );
+        maxWait = componentDescriptor.getPoolMaxWait();
+        idleTimeout = componentDescriptor.getPoolIdleTimeout();
+        available = new Semaphore( maxSize );
+    }
+
+    public T getComponent() throws ComponentInstantiationException, ComponentLifecycleException
+    {
+        if ( disposed )
+        {
+            throw new ComponentLifecycleException( "This ComponentManager has already been destroyed" );
+        }
+
+        if ( !available.tryAcquire() )
+        {
+            waits.incrementAndGet();
+            try
+            {
+                if ( maxWait <= 0 )
+                {
+                    available.acquire();
+                }
+                else if ( !available.tryAcquire( maxWait, TimeUnit.MILLISECONDS ) )
+                {
+                    throw new ComponentLifecycleException( "No pooled instance was released within " + maxWait +
+                        " ms, all " + maxSize + " instances are in use" );
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new ComponentLifecycleException( "Interrupted while waiting for a pooled instance" );
+            }
+        }
+
+        boolean lent = false;
+        try
+        {
+            T instance = borrowIdleInstance();
+            if ( instance != null )
+            {
+                hits.incrementAndGet();
+            }
+            else
+            {
+                misses.incrementAndGet();
+
+                // do not call createInstance inside of a synchronized block because
+                // createInstance results in several callbacks to user code which
+                // could result in a dead lock
+                instance = createInstance();
+            }
+
+            borrowed.put( instance, Boolean.TRUE );
+            lent = true;
+
+            // if this manager has been destroyed while borrowing, destroy the instance
+            if ( disposed )
+            {
+                release( instance );
+                throw new ComponentLifecycleException( "This ComponentManager has already been destroyed" );
+            }
+
+            return instance;
+        }
+        finally
+        {
+            // once lent, the permit is returned by release
+            if ( !lent )
+            {
+                available.release();
+            }
+        }
+    }
+
+    private T borrowIdleInstance()
+    {
+        for ( IdleInstance<T> idleInstance = pollIdle(); idleInstance != null; idleInstance = pollIdle() )
+        {
+            T instance = idleInstance.instance;
+            if ( instance instanceof Suspendable )
+            {
+                try
+                {
+                    ( (Suspendable) instance ).resume();
+                }
+                catch ( RuntimeException e )
+                {
+                    // an instance that can not be resumed is discarded
+                    destroyQuietly( instance );
+                    continue;
+                }
+            }
+            return instance;
+        }
+        return null;
+    }
+
+    private IdleInstance<T> pollIdle()
+    {
+        IdleInstance<T> idleInstance = idle.poll();
+        if ( idleInstance != null )
+        {
+            idleCount.decrementAndGet();
+        }
+        return idleInstance;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    public void release( Object component ) throws ComponentLifecycleException
+    {
+        if ( borrowed.remove( component ) == null )
+        {
+            return;
+        }
+
+        T instance = (T) component;
+        try
+        {
+            if ( disposed )
+            {
+                destroyInstance( instance );
+                return;
+            }
+
+            if ( instance instanceof Suspendable )
+            {
+                try
+                {
+                    ( (Suspendable) instance ).suspend();
+                }
+                catch ( RuntimeException e )
+                {
+                    // an instance that can not be suspended is not reused
+                    destroyInstance( instance );
+                    return;
+                }
+            }
+
+            idle.add( new IdleInstance<T>( instance, System.currentTimeMillis() ) );
+            idleCount.incrementAndGet();
+        }
+        finally
+        {
+            available.release();
+        }
+
+        evictIdleInstances();
+
+        // dispose may have drained the pool before the instance was added
+        if ( disposed )
+        {
+            destroyIdleInstances();
+        }
+    }
+
+    /**
+     * Destroys the instances that have been idle longer than the idle timeout, keeping at least the minimum number
+     * of idle instances.  The oldest idle instances are at the head of the queue.
+     */
+    private void evictIdleInstances()
+    {
+        if ( idleTimeout <= 0 )
+        {
+            return;
+        }
+
+        long expired = System.currentTimeMillis() - idleTimeout;
+        while ( idleCount.get() > minSize )
+        {
+            IdleInstance<T> idleInstance = idle.peek();
+            if ( idleInstance == null || idleInstance.idleSince > expired )
+            {
+                return;
+            }
+
+            // only destroy the instance if this thread won the race to remove it
+            if ( idle.remove( idleInstance ) )
+            {
+                idleCount.decrementAndGet();
+                destroyQuietly( idleInstance.instance );
+            }
+        }
+    }
+
+    public void dispose() throws ComponentLifecycleException
+    {
+        super.dispose();
+
+        disposed = true;
+
+        // borrowed instances are destroyed when they are released
+        ComponentLifecycleException componentLifecycleException = destroyIdleInstances();
+        if ( componentLifecycleException != null )
+        {
+            throw componentLifecycleException;
+        }
+    }
+
+    private ComponentLifecycleException destroyIdleInstances()
+    {
+        List<T> instances = new ArrayList<T>();
+        for ( IdleInstance<T> idleInstance = pollIdle(); idleInstance != null; idleInstance = pollIdle() )
+        {
+            instances.add( idleInstance.instance );
+        }
+
+        ComponentLifecycleException componentLifecycleException = null;
+        for ( T instance : instances )
+        {
+            try
+            {
+                destroyInstance( instance );
+            }
+            catch ( ComponentLifecycleException e )
+            {
+                if ( componentLifecycleException == null )
+                {
+                    componentLifecycleException = e;
+                }
+            }
+        }
+        return componentLifecycleException;
+    }
+
+    private void destroyQuietly( T instance )
+    {
+        try
+        {
+            destroyInstance( instance );
+        }
+        catch ( ComponentLifecycleException e )
+        {
+            getContainer().getLogger().warn( "Error destroying pooled instance of " +
+                getComponentDescriptor().getHumanReadableKey(), e );
+        }
+    }
+
+    /**
+     * Gets the number of lookups that reused an idle instance.
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups that had to create a new instance.
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of lookups that had to wait for an instance to be released.
+     */
+    public long getWaitCount()
+    {
+        return waits.get();
+    }
+
+    /**
+     * Gets the number of idle instances in the pool.
+     */
+    public int getIdleCount()
+    {
+        return idleCount.get();
+    }
+
+    /**
+     * Gets the number of instances currently borrowed from the pool.
+     */
+    public int getActiveCount()
+    {
+        return maxSize - available.availablePermits();
+    }
+
+    public String toString()
+    {
+        return "PooledComponentManager[" + getComponentDescriptor().getImplementationClass().getName() + "]";
+    }
+
+    private static final class IdleInstance<T>
+    {
+        private final T instance;
+
+        private final long idleSince;
+
+        private IdleInstance( T instance, long idleSince )
+        {
+            this.instance = instance;
+            this.idleSince = idleSince;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.codehaus.plexus.component.manager;
+
+/*
+ * Copyright 2001-2006 Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.codehaus.plexus.MutablePlexusContainer;
+import org.codehaus.plexus.component.ComponentScope;
+import org.codehaus.plexus.component.ComponentScopes;
+import org.codehaus.plexus.component.factory.ComponentInstantiationException;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
+import org.codehaus.plexus.lifecycle.LifecycleHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates one instance per active scope.  Lookups from the same scope return the same instance, and all instances
+ * created in a scope are destroyed when the scope is exited, so scoped instances do not need to be released.
+ *
+ * @see org.codehaus.plexus.PlexusContainer#enterScope(String)
+ */
+public class ScopedComponentManager<T>
+    extends AbstractComponentManager<T>
+{
+    private final ConcurrentMap<ComponentScope, T> instances = new ConcurrentHashMap<ComponentScope, T>();
+
+    private final ComponentScopes scopes;
+
+    private volatile boolean disposed;
+
+    public ScopedComponentManager( MutablePlexusContainer container,
+                                   LifecycleHandler lifecycleHandler,
+                                   ComponentDescriptor<T> componentDescriptor,
+                                   ComponentScopes scopes )
+    {
+        super( container, lifecycleHandler, componentDescriptor );
+        this.scopes = scopes;
+    }
+
+    public T getComponent() throws ComponentInstantiationException, ComponentLifecycleException
+    {
+        if ( disposed )
+        {
+            throw new ComponentLifecycleException( "This ComponentManager has already been destroyed" );
+        }
+
+        ComponentScope scope = scopes.getCurrentScope();
+        if ( scope == null )
+        {
+            throw new ComponentLifecycleException( "Scoped component " + getComponentDescriptor().getHumanReadableKey() +
+                " can only be looked up inside a scope" );
+        }
+
+        T instance = instances.get( scope );
+        if ( instance != null )
+        {
+            return instance;
+        }
+
+        // do not call createInstance inside of a synchronized block because
+        // createInstance results in several callbacks to user code which
+        // could result in a dead lock
+        instance = createInstance();
+
+        T existing = instances.putIfAbsent( scope, instance );
+        if ( existing != null )
+        {
+            destroyQuietly( instance );
+            return existing;
+        }
+
+        // if the scope was exited or this manager destroyed during create, destroy newly created component
+        if ( !scope.addManager( this ) || disposed )
+        {
+            if ( instances.remove( scope, instance ) )
+            {
+                destroyQuietly( instance );
+            }
+            throw new ComponentLifecycleException( "Scope " + scope.getName() + " was exited during lookup" );
+        }
+
+        return instance;
+    }
+
+    public void release( Object component ) throws ComponentLifecycleException
+    {
+        // the instance belongs to the scope, and is destroyed when the scope is exited
+    }
+
+    /**
+     * Destroys the instance created in the scope.  Called by the scope when it is exited.
+     */
+    public void scopeExited( ComponentScope scope ) throws ComponentLifecycleException
+    {
+        T instance = instances.remove( scope );
+        if ( instance != null )
+        {
+            destroyInstance( instance );
+        }
+    }
+
+    public void dispose() throws ComponentLifecycleException
+    {
+        super.dispose();
+
+        disposed = true;
+
+        List<T> instances = new ArrayList<T>();
+        for ( ComponentScope scope : this.instances.keySet() )
+        {
+            T instance = this.instances.remove( scope );
+            if ( instance != null )
+            {
+                instances.add( instance );
+            }
+        }
+
+        ComponentLifecycleException componentLifecycleException = null;
+        for ( T instance : instances )
+        {
+            try
+            {
+                destroyInstance( instance );
+            }
+            catch ( ComponentLifecycleException e )
+            {
+                if ( componentLifecycleException == null )
+                {
+                    componentLifecycleException = e;
+                }
+            }
+        }
+
+        if ( componentLifecycleException != null )
+        {
+            throw componentLifecycleException;
+        }
+    }
+
+    private void destroyQuietly( Object instance )
+    {
+        try
+        {
+            destroyInstance( instance );
+        }
+        catch ( ComponentLifecycleException e )
+        {
+            getContainer().getLogger().warn( "Error destroying scoped instance of " +
+                getComponentDescriptor().getHumanReadableKey(), e );
+        }
+    }
+
+    public String toString()
+    {
+        return "ScopedComponentManager[" + getComponentDescriptor().getImplementationClass().getName() + "]";
+    }
+}
@@ -36,6 +36,12 @@ public class SingletonComponentManager<T> extends AbstractComponentManager<T>
     private boolean disposed;
     private Future<T> singletonFuture;
 
+    /**
+     * The singleton once it has been successfully created.  This is read without locking, so lookups of an existing
+     * singleton never block; it is only written while holding the lock.
+     */
+    private volatile T singleton;
+
     public SingletonComponentManager( MutablePlexusContainer container,
                                       LifecycleHandler lifecycleHandler,
                                       ComponentDescriptor<T> componentDescriptor )
@@ -43,8 +49,10 @@ public class SingletonComponentManager<T> extends AbstractComponentManager<T>
         super( container, lifecycleHandler, componentDescriptor );
     }
 
-    public synchronized void dispose() throws ComponentLifecycleException
+    public void dispose() throws ComponentLifecycleException
     {
+        super.dispose();
+
         T singleton;
         synchronized ( this )
         {
@@ -63,6 +71,13 @@ public class SingletonComponentManager<T> extends AbstractComponentManager<T>
 
     public T getComponent( ) throws ComponentInstantiationException, ComponentLifecycleException
     {
+        // fast path: the singleton has already been created and published
+        T singleton = this.singleton;
+        if ( singleton != null )
+        {
+            return singleton;
+        }
+
         FutureTask<T> singletonFuture;
         synchronized (this) {
             if (disposed)
@@ -71,7 +86,7 @@ public class SingletonComponentManager<T> extends AbstractComponentManager<T>
             }
 
             // if singleton already created, simply return the existing singleton
-            T singleton = getExistingInstance( false );
+            singleton = getExistingInstance( false );
             if (singleton != null) {
                 return singleton;
             }
@@ -91,7 +106,17 @@ public class SingletonComponentManager<T> extends AbstractComponentManager<T>
         // try to get the future instance
         try
         {
-            return singletonFuture.get();
+            singleton = singletonFuture.get();
+
+            // publish the singleton unless it was released or disposed while it was being created
+            synchronized ( this )
+            {
+                if ( this.singletonFuture == singletonFuture )
+                {
+                    this.singleton = singleton;
+                }
+            }
+            return singleton;
         }
         catch ( Exception e )
         {
@@ -150,6 +175,12 @@ public class SingletonComponentManager<T> extends AbstractComponentManager<T>
 
     private T getExistingInstance(boolean clearFuture) {
         synchronized (this) {
+            if (clearFuture) {
+                singleton = null;
+            }
+            if (singletonFuture == null) {
+                return null;
+            }
             try {
                 return singletonFuture.get();
             } catch (Exception e) {
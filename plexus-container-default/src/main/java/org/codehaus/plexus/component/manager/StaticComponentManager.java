@@ -68,6 +68,11 @@ public class StaticComponentManager<T> implements ComponentManager<T>
         startId = NEXT_START_ID.getAndIncrement();
     }
 
+    public void awaitStarted( Object component )
+    {
+        // the instance was started before it was added
+    }
+
     public long getStartId()
     {
         return startId;
@@ -55,6 +55,20 @@ public class ComponentDescriptor<T>
 
     private String instantiationStrategy;
 
+    private int poolMinSize = 0;
+
+    private int poolMaxSize = 8;
+
+    private long poolMaxWait = 0;
+
+    private long poolIdleTimeout = 0;
+
+    private long evictionIdleTimeout = 0;
+
+    private boolean evictOnMemoryPressure;
+
+    private boolean asyncStart;
+
     private String lifecycleHandler;
 
     private String componentProfile;
@@ -560,6 +574,155 @@ public class ComponentDescriptor<T>
         this.instantiationStrategy = instantiationStrategy;
     }
 
+    /**
+     * Returns the number of idle instances a "pooled" component keeps even when they exceed the idle timeout.
+     * Defaults to 0.
+     *
+     * @return the minimum number of idle pooled instances
+     */
+    public int getPoolMinSize()
+    {
+        return poolMinSize;
+    }
+
+    /**
+     * Sets the number of idle instances a "pooled" component keeps even when they exceed the idle timeout.
+     *
+     * @param poolMinSize the minimum number of idle pooled instances
+     */
+    public void setPoolMinSize( int poolMinSize )
+    {
+        this.poolMinSize = poolMinSize;
+    }
+
+    /**
+     * Returns the maximum number of instances of a "pooled" component that may exist at the same time.  Lookups
+     * block while all instances are in use.  Defaults to 8.
+     *
+     * @return the maximum number of pooled instances
+     */
+    public int getPoolMaxSize()
+    {
+        return poolMaxSize;
+    }
+
+    /**
+     * Sets the maximum number of instances of a "pooled" component that may exist at the same time.
+     *
+     * @param poolMaxSize the maximum number of pooled instances
+     */
+    public void setPoolMaxSize( int poolMaxSize )
+    {
+        this.poolMaxSize = poolMaxSize;
+    }
+
+    /**
+     * Returns the number of milliseconds a lookup of a "pooled" component waits for an instance to be released when
+     * all instances are in use, or 0 if the lookup waits indefinitely.  Defaults to 0.
+     *
+     * @return the maximum wait in milliseconds
+     */
+    public long getPoolMaxWait()
+    {
+        return poolMaxWait;
+    }
+
+    /**
+     * Sets the number of milliseconds a lookup of a "pooled" component waits for an instance to be released.
+     *
+     * @param poolMaxWait the maximum wait in milliseconds, or 0 to wait indefinitely
+     */
+    public void setPoolMaxWait( long poolMaxWait )
+    {
+        this.poolMaxWait = poolMaxWait;
+    }
+
+    /**
+     * Returns the number of milliseconds an instance of a "pooled" component may stay idle before it is destroyed,
+     * or 0 if idle instances are never destroyed.  Defaults to 0.
+     *
+     * @return the idle timeout in milliseconds
+     */
+    public long getPoolIdleTimeout()
+    {
+        return poolIdleTimeout;
+    }
+
+    /**
+     * Sets the number of milliseconds an instance of a "pooled" component may stay idle before it is destroyed.
+     *
+     * @param poolIdleTimeout the idle timeout in milliseconds, or 0 to never destroy idle instances
+     */
+    public void setPoolIdleTimeout( long poolIdleTimeout )
+    {
+        this.poolIdleTimeout = poolIdleTimeout;
+    }
+
+    /**
+     * Returns the number of milliseconds an "evictable-singleton" component may go without being looked up before it
+     * is destroyed, or 0 if it is never destroyed for being idle.  Defaults to 0.
+     *
+     * @return the idle timeout in milliseconds
+     */
+    public long getEvictionIdleTimeout()
+    {
+        return evictionIdleTimeout;
+    }
+
+    /**
+     * Sets the number of milliseconds an "evictable-singleton" component may go without being looked up before it is
+     * destroyed.
+     *
+     * @param evictionIdleTimeout the idle timeout in milliseconds, or 0 to never destroy the component for being idle
+     */
+    public void setEvictionIdleTimeout( long evictionIdleTimeout )
+    {
+        this.evictionIdleTimeout = evictionIdleTimeout;
+    }
+
+    /**
+     * Returns true if an "evictable-singleton" component is destroyed when the garbage collector runs short of memory.
+     * Defaults to false.
+     *
+     * @return true if the component is destroyed under memory pressure
+     */
+    public boolean isEvictOnMemoryPressure()
+    {
+        return evictOnMemoryPressure;
+    }
+
+    /**
+     * Sets whether an "evictable-singleton" component is destroyed when the garbage collector runs short of memory.
+     *
+     * @param evictOnMemoryPressure true to destroy the component under memory pressure
+     */
+    public void setEvictOnMemoryPressure( boolean evictOnMemoryPressure )
+    {
+        this.evictOnMemoryPressure = evictOnMemoryPressure;
+    }
+
+    /**
+     * Returns true if the lifecycle of this component is started on the start executor of the container, rather than
+     * by the thread creating the component.  Lookups still return a started component, but the creating thread and
+     * the container boot do not wait for the start.  Defaults to false.
+     *
+     * @return true if this component is started asynchronously
+     */
+    public boolean isAsyncStart()
+    {
+        return asyncStart;
+    }
+
+    /**
+     * Sets whether the lifecycle of this component is started on the start executor of the container.
+     *
+     * @param asyncStart true to start this component asynchronously
+     */
+    public void setAsyncStart( boolean asyncStart )
+    {
+        this.asyncStart = asyncStart;
+    }
+
     // ----------------------------------------------------------------------
     //
     // ----------------------------------------------------------------------
@@ -34,6 +34,8 @@ public class ComponentRequirement
 
     private String fieldMappingType;
 
+    private boolean lazy;
+
     public ComponentRequirement()
     {
     }
@@ -146,6 +148,25 @@ public class ComponentRequirement
         this.fieldMappingType = fieldType;
     }
 
+    /**
+     * Returns true if a proxy is injected for this requirement, and the required component is looked up on the first
+     * call to the proxy.  Only requirements injected into a field or property with an interface type can be lazy.
+     * @return true if this requirement is resolved lazily
+     */
+    public boolean isLazy()
+    {
+        return lazy;
+    }
+
+    /**
+     * Sets whether this requirement is resolved lazily.
+     * @param lazy true to inject a proxy that looks up the required component on first use
+     */
+    public void setLazy( boolean lazy )
+    {
+        this.lazy = lazy;
+    }
+
     public String toString()
     {
         return "ComponentRequirement{" +
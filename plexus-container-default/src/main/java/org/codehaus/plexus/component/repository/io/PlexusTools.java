@@ -110,6 +110,40 @@ public class PlexusTools
 
         cd.setInstantiationStrategy( configuration.getChild( "instantiation-strategy" ).getValue() );
 
+        String poolMinSize = configuration.getChild( "pool-min-size" ).getValue();
+        if ( poolMinSize != null )
+        {
+            cd.setPoolMinSize( parseInt( "pool-min-size", poolMinSize ) );
+        }
+
+        String poolMaxSize = configuration.getChild( "pool-max-size" ).getValue();
+        if ( poolMaxSize != null )
+        {
+            cd.setPoolMaxSize( parseInt( "pool-max-size", poolMaxSize ) );
+        }
+
+        String poolMaxWait = configuration.getChild( "pool-max-wait" ).getValue();
+        if ( poolMaxWait != null )
+        {
+            cd.setPoolMaxWait( parseLong( "pool-max-wait", poolMaxWait ) );
+        }
+
+        String poolIdleTimeout = configuration.getChild( "pool-idle-timeout" ).getValue();
+        if ( poolIdleTimeout != null )
+        {
+            cd.setPoolIdleTimeout( parseLong( "pool-idle-timeout", poolIdleTimeout ) );
+        }
+
+        String evictionIdleTimeout = configuration.getChild( "eviction-idle-timeout" ).getValue();
+        if ( evictionIdleTimeout != null )
+        {
+            cd.setEvictionIdleTimeout( parseLong( "eviction-idle-timeout", evictionIdleTimeout ) );
+        }
+
+        cd.setEvictOnMemoryPressure( "true".equals( configuration.getChild( "evict-on-memory-pressure" ).getValue() ) );
+
+        cd.setAsyncStart( "true".equals( configuration.getChild( "async-start" ).getValue() ) );
+
         cd.setLifecycleHandler( configuration.getChild( "lifecycle-handler" ).getValue() );
 
         cd.setComponentProfile( configuration.getChild( "component-profile" ).getValue() );
@@ -174,12 +208,40 @@ public class PlexusTools
 
             cr.setFieldName( requirement.getChild( "field-name" ).getValue() );
 
+            cr.setLazy( "true".equals( requirement.getChild( "lazy" ).getValue() ) );
+
             cd.addRequirement( cr );
         }
 
         return cd;
     }
 
+    private static int parseInt( String name, String value )
+        throws PlexusConfigurationException
+    {
+        try
+        {
+            return Integer.parseInt( value.trim() );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new PlexusConfigurationException( name + " is not a number in the int range: " + value, e );
+        }
+    }
+
+    private static long parseLong( String name, String value )
+        throws PlexusConfigurationException
+    {
+        try
+        {
+            return Long.parseLong( value.trim() );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new PlexusConfigurationException( name + " is not a number: " + value, e );
+        }
+    }
+
     public static ComponentSetDescriptor buildComponentSet( PlexusConfiguration c, ClassRealm realm )
         throws PlexusConfigurationException
     {
@@ -18,7 +18,11 @@ package org.codehaus.plexus.container.initialization;
 
 import org.codehaus.plexus.ComponentRegistry;
 import org.codehaus.plexus.DefaultComponentRegistry;
+import org.codehaus.plexus.component.manager.EvictableSingletonComponentManagerFactory;
 import org.codehaus.plexus.component.manager.PerLookupComponentManagerFactory;
+import org.codehaus.plexus.component.manager.PerThreadComponentManagerFactory;
+import org.codehaus.plexus.component.manager.PooledComponentManagerFactory;
+import org.codehaus.plexus.component.manager.ScopedComponentManagerFactory;
 import org.codehaus.plexus.component.manager.SingletonComponentManagerFactory;
 import org.codehaus.plexus.component.repository.ComponentDescriptor;
 import org.codehaus.plexus.component.repository.exception.ComponentRepositoryException;
@@ -37,13 +41,27 @@ public class InitializeComponentRegistryPhase implements ContainerInitialization
     {
         LifecycleHandlerManager lifecycleHandlerManager = getLifecycleHandlerManager( context );
 
-        ComponentRegistry componentRegistry = new DefaultComponentRegistry( context.getContainer(),
+        DefaultComponentRegistry componentRegistry = new DefaultComponentRegistry( context.getContainer(),
             lifecycleHandlerManager );
 
+        componentRegistry.setDisposeExecutor( context.getContainerConfiguration().getDisposeExecutor() );
+
+        componentRegistry.setComponentDisposeTimeout( context.getContainerConfiguration().getComponentDisposeTimeout() );
+
         componentRegistry.registerComponentManagerFactory( new PerLookupComponentManagerFactory() );
 
+        componentRegistry.registerComponentManagerFactory( new PerLookupComponentManagerFactory( "per-lookup-untracked", false ) );
+
         componentRegistry.registerComponentManagerFactory( new SingletonComponentManagerFactory() );
 
+        componentRegistry.registerComponentManagerFactory( new EvictableSingletonComponentManagerFactory() );
+
+        componentRegistry.registerComponentManagerFactory( new PerThreadComponentManagerFactory() );
+
+        componentRegistry.registerComponentManagerFactory( new PooledComponentManagerFactory() );
+
+        componentRegistry.registerComponentManagerFactory( new ScopedComponentManagerFactory() );
+
         initializeComponentRegistry( componentRegistry, context );
 
         context.getContainer().setComponentRegistry( componentRegistry );
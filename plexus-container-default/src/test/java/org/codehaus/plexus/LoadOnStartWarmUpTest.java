@@ -0,0 +1,111 @@
+package org.codehaus.plexus;
+
+/*
+ * Copyright 2001-2006 Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class LoadOnStartWarmUpTest
+    extends TestCase
+{
+    private static final List<String> created = Collections.synchronizedList( new ArrayList<String>() );
+
+    private ExecutorService executor;
+
+    private DefaultPlexusContainer container;
+
+    protected void setUp()
+        throws Exception
+    {
+        created.clear();
+
+        executor = Executors.newFixedThreadPool( 2 );
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        if ( container != null )
+        {
+            container.dispose();
+        }
+        executor.shutdown();
+    }
+
+    public void testLoadOnStartInParallel()
+        throws Exception
+    {
+        ContainerConfiguration containerConfiguration = new DefaultContainerConfiguration()
+            .setName( "test" )
+            .setContainerConfiguration( "/" + getClass().getName().replace( '.', '/' ) + ".xml" )
+            .setLoadOnStartExecutor( executor );
+
+        container = new DefaultPlexusContainer( containerConfiguration );
+
+        // the required singleton is created ahead of the component requiring it
+        assertEquals( 3, created.size() );
+        assertTrue( created.indexOf( "leaf" ) < created.indexOf( "root" ) );
+        assertTrue( created.contains( "independent" ) );
+
+        Root root = container.lookup( Root.class );
+        assertSame( container.lookup( Leaf.class ), root.leaf );
+        assertEquals( 3, created.size() );
+    }
+
+    public void testLoadOnStartSerially()
+        throws Exception
+    {
+        ContainerConfiguration containerConfiguration = new DefaultContainerConfiguration()
+            .setName( "test" )
+            .setContainerConfiguration( "/" + getClass().getName().replace( '.', '/' ) + ".xml" );
+
+        container = new DefaultPlexusContainer( containerConfiguration );
+
+        assertEquals( 3, created.size() );
+    }
+
+    public static class Root
+    {
+        private Leaf leaf;
+
+        public Root()
+        {
+            created.add( "root" );
+        }
+    }
+
+    public static class Leaf
+    {
+        public Leaf()
+        {
+            created.add( "leaf" );
+        }
+    }
+
+    public static class Independent
+    {
+        public Independent()
+        {
+            created.add( "independent" );
+        }
+    }
+}
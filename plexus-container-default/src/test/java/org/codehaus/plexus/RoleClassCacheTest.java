@@ -0,0 +1,89 @@
+package org.codehaus.plexus;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+
+public class RoleClassCacheTest
+    extends TestCase
+{
+    private DefaultPlexusContainer container;
+
+    private ClassRealm isolatedRealm;
+
+    protected void setUp()
+        throws Exception
+    {
+        container = new DefaultPlexusContainer();
+
+        ComponentDescriptor<DefaultRole> descriptor =
+            new ComponentDescriptor<DefaultRole>( DefaultRole.class, container.getContainerRealm() );
+        descriptor.setRole( Role.class.getName() );
+        container.addComponentDescriptor( descriptor );
+
+        // a realm that can not load the classes of the test
+        isolatedRealm = container.getClassWorld().newRealm( "isolated", null );
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        container.dispose();
+    }
+
+    public void testLoadedRoleIsCached()
+        throws Exception
+    {
+        container.setLookupRealm( container.getContainerRealm() );
+
+        assertTrue( container.lookup( Role.class.getName() ) instanceof DefaultRole );
+        assertSame( Role.class, container.getCachedRoleClass( container.getContainerRealm(), Role.class.getName() ) );
+    }
+
+    public void testNotLoadableRoleIsCached()
+        throws Exception
+    {
+        container.setLookupRealm( isolatedRealm );
+
+        assertFalse( container.hasComponent( "org.codehaus.plexus.MissingRole" ) );
+        assertSame( DefaultPlexusContainer.RoleNotLoadable.class,
+                    container.getCachedRoleClass( isolatedRealm, "org.codehaus.plexus.MissingRole" ) );
+    }
+
+    public void testNotLoadableRoleIsKeptWhenLoadedByAnotherPath()
+        throws Exception
+    {
+        container.setLookupRealm( isolatedRealm );
+
+        // the isolated realm can not load the role, but the context class loader can
+        assertTrue( container.lookup( Role.class.getName() ) instanceof DefaultRole );
+        assertTrue( container.lookup( Role.class.getName() ) instanceof DefaultRole );
+        assertSame( DefaultPlexusContainer.RoleNotLoadable.class,
+                    container.getCachedRoleClass( isolatedRealm, Role.class.getName() ) );
+
+        // until the realm is set as lookup realm again
+        container.setLookupRealm( isolatedRealm );
+        assertNull( container.getCachedRoleClass( isolatedRealm, Role.class.getName() ) );
+    }
+
+    public void testRemovedRealmIsEvicted()
+        throws Exception
+    {
+        ClassRealm childRealm = container.createChildRealm( "child" );
+        container.setLookupRealm( childRealm );
+        container.lookup( Role.class.getName() );
+        assertSame( Role.class, container.getCachedRoleClass( childRealm, Role.class.getName() ) );
+
+        container.removeComponentRealm( childRealm );
+        assertNull( container.getCachedRoleClass( childRealm, Role.class.getName() ) );
+    }
+
+    public interface Role
+    {
+    }
+
+    public static class DefaultRole
+        implements Role
+    {
+    }
+}
@@ -0,0 +1,185 @@
+package org.codehaus.plexus.component;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.classworlds.ClassWorld;
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class ComponentIndexTest
+    extends TestCase
+{
+    private ClassRealm parentRealm;
+
+    private ClassRealm childRealm;
+
+    protected void setUp()
+        throws Exception
+    {
+        ClassWorld classWorld = new ClassWorld( "parent", getClass().getClassLoader() );
+        parentRealm = classWorld.getRealm( "parent" );
+        childRealm = parentRealm.createChildRealm( "child" );
+    }
+
+    public void testGet()
+    {
+        ComponentIndex<String> index = new ComponentIndex<String>();
+        index.add( parentRealm, Runnable.class, null, "parent-default" );
+        index.add( parentRealm, Runnable.class, "hint", "parent-hint" );
+
+        assertEquals( "parent-default", index.get( Runnable.class, null, parentRealm ) );
+        assertEquals( "parent-default", index.get( Runnable.class, "default", parentRealm ) );
+        assertEquals( "parent-hint", index.get( Runnable.class, "hint", parentRealm ) );
+        assertNull( index.get( Runnable.class, "missing", parentRealm ) );
+        assertNull( index.get( Comparable.class, null, parentRealm ) );
+    }
+
+    public void testRealmSearch()
+    {
+        ComponentIndex<String> index = new ComponentIndex<String>();
+        index.add( parentRealm, Runnable.class, "a", "parent-a" );
+        index.add( childRealm, Runnable.class, "b", "child-b" );
+
+        // child realm sees values of the parent realm, but not the other way around
+        assertEquals( "parent-a", index.get( Runnable.class, "a", childRealm ) );
+        assertEquals( "child-b", index.get( Runnable.class, "b", childRealm ) );
+        assertEquals( "parent-a", index.get( Runnable.class, "a", parentRealm ) );
+        assertNull( index.get( Runnable.class, "b", parentRealm ) );
+
+        Map<String, String> map = index.getAllAsMap( Runnable.class, childRealm );
+        assertEquals( 2, map.size() );
+        assertEquals( "parent-a", map.get( "a" ) );
+        assertEquals( "child-b", map.get( "b" ) );
+
+        assertEquals( Collections.singletonList( "parent-a" ), index.getAll( Runnable.class, parentRealm ) );
+        assertEquals( 2, index.getAll( Runnable.class, childRealm ).size() );
+    }
+
+    public void testRemoveLookupOnlyRealm()
+    {
+        ComponentIndex<String> index = new ComponentIndex<String>();
+        index.add( parentRealm, Runnable.class, "a", "parent-a" );
+
+        // the child realm has no values of its own, it is only used for lookups
+        assertEquals( "parent-a", index.get( Runnable.class, "a", childRealm ) );
+        assertTrue( index.isResolutionCached( Runnable.class, childRealm ) );
+
+        assertTrue( index.removeAll( childRealm ).isEmpty() );
+        assertFalse( index.isResolutionCached( Runnable.class, childRealm ) );
+
+        // the resolutions from the parent realm are not affected
+        assertEquals( "parent-a", index.get( Runnable.class, "a", parentRealm ) );
+        assertTrue( index.isResolutionCached( Runnable.class, parentRealm ) );
+    }
+
+    public void testRemove()
+    {
+        ComponentIndex<String> index = new ComponentIndex<String>();
+        index.add( parentRealm, Runnable.class, "a", "parent-a" );
+        index.add( childRealm, Runnable.class, "a", "child-a" );
+
+        List<String> before = index.getAll( Runnable.class, childRealm );
+
+        index.remove( "child-a" );
+        assertEquals( "parent-a", index.get( Runnable.class, "a", childRealm ) );
+        assertEquals( Collections.singletonList( "parent-a" ), index.getAll( Runnable.class, childRealm ) );
+
+        // previously returned results are not affected by the removal
+        assertEquals( 2, before.size() );
+
+        index.remove( "parent-a" );
+        assertNull( index.get( Runnable.class, "a", childRealm ) );
+        assertTrue( index.getAll().isEmpty() );
+    }
+
+    public void testRemoveValueInSeveralRealms()
+    {
+        ComponentIndex<String> index = new ComponentIndex<String>( true );
+        index.add( parentRealm, Thread.class, "a", "shared" );
+        index.add( childRealm, Thread.class, "b", "shared" );
+        index.add( parentRealm, Thread.class, "c", "other" );
+
+        index.removeAll( childRealm );
+        assertEquals( "shared", index.get( Runnable.class, "a", parentRealm ) );
+
+        index.remove( "shared" );
+        assertNull( index.get( Runnable.class, "a", parentRealm ) );
+        assertNull( index.get( Thread.class, "a", parentRealm ) );
+        assertEquals( Collections.singletonList( "other" ), index.getAll( Runnable.class, parentRealm ) );
+
+        // removing an unknown value is a no-op
+        index.remove( "shared" );
+        assertEquals( Collections.singletonList( "other" ), index.getAll( Thread.class, parentRealm ) );
+    }
+
+    public void testRemoveAll()
+    {
+        ComponentIndex<String> index = new ComponentIndex<String>();
+        index.add( parentRealm, Runnable.class, "a", "parent-a" );
+        index.add( childRealm, Runnable.class, "a", "child-a" );
+        index.add( childRealm, Runnable.class, "b", "child-b" );
+
+        List<String> removed = index.removeAll( childRealm );
+        assertEquals( 2, removed.size() );
+        assertTrue( removed.containsAll( Arrays.asList( "child-a", "child-b" ) ) );
+
+        assertEquals( "parent-a", index.get( Runnable.class, "a", childRealm ) );
+        assertNull( index.get( Runnable.class, "b", childRealm ) );
+
+        // removing an unknown realm is a no-op
+        assertTrue( index.removeAll( childRealm ).isEmpty() );
+    }
+
+    public void testIndexByAllTypes()
+    {
+        ComponentIndex<String> index = new ComponentIndex<String>( true );
+        index.add( parentRealm, Thread.class, null, "thread" );
+
+        assertEquals( "thread", index.get( Thread.class, null, parentRealm ) );
+        assertEquals( "thread", index.get( Runnable.class, null, parentRealm ) );
+        assertEquals( "thread", index.get( Object.class, null, parentRealm ) );
+
+        index.remove( "thread" );
+        assertNull( index.get( Runnable.class, null, parentRealm ) );
+        assertNull( index.get( Object.class, null, parentRealm ) );
+    }
+
+    public void testCachedLookupsSeeModifications()
+    {
+        ComponentIndex<String> index = new ComponentIndex<String>();
+        index.add( childRealm, Runnable.class, "a", "child-a" );
+
+        // resolve from both realms so the lookups are cached
+        assertNull( index.get( Runnable.class, "b", childRealm ) );
+        assertNull( index.get( Runnable.class, "b", parentRealm ) );
+
+        // adding to the parent realm is visible from the child realm
+        index.add( parentRealm, Runnable.class, "b", "parent-b" );
+        assertEquals( "parent-b", index.get( Runnable.class, "b", childRealm ) );
+        assertEquals( "parent-b", index.get( Runnable.class, "b", parentRealm ) );
+        assertEquals( 2, index.getAllAsMap( Runnable.class, childRealm ).size() );
+
+        // removing the child realm is visible from the child realm, but does not disturb the parent realm
+        index.removeAll( childRealm );
+        assertNull( index.get( Runnable.class, "a", childRealm ) );
+        assertEquals( "parent-b", index.get( Runnable.class, "b", parentRealm ) );
+
+        index.remove( "parent-b" );
+        assertNull( index.get( Runnable.class, "b", childRealm ) );
+        assertNull( index.get( Runnable.class, "b", parentRealm ) );
+    }
+
+    public void testClear()
+    {
+        ComponentIndex<String> index = new ComponentIndex<String>();
+        index.add( parentRealm, Runnable.class, "a", "parent-a" );
+        index.add( childRealm, Runnable.class, "a", "child-a" );
+
+        assertEquals( 2, index.clear().size() );
+        assertNull( index.get( Runnable.class, "a", childRealm ) );
+        assertTrue( index.getAll().isEmpty() );
+    }
+}
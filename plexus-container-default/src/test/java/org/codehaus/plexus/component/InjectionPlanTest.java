@@ -0,0 +1,98 @@
+package org.codehaus.plexus.component;
+
+import junit.framework.TestCase;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.List;
+
+public class InjectionPlanTest
+    extends TestCase
+{
+    public void testPlanIsCachedPerClass()
+    {
+        InjectionPlan plan = InjectionPlan.forClass( Child.class );
+
+        assertSame( plan, InjectionPlan.forClass( Child.class ) );
+        assertNotSame( plan, InjectionPlan.forClass( Parent.class ) );
+        assertSame( plan.getField( "name" ), plan.getField( "name" ) );
+    }
+
+    public void testMembers()
+        throws Exception
+    {
+        InjectionPlan plan = InjectionPlan.forClass( Child.class );
+
+        Field field = plan.getField( "name" );
+        assertEquals( Parent.class, field.getDeclaringClass() );
+        assertTrue( field.isAccessible() );
+
+        Child child = new Child();
+        field.set( child, "value" );
+        assertEquals( "value", child.getName() );
+
+        Method setter = plan.getSetter( "name" );
+        assertEquals( "setName", setter.getName() );
+
+        // the override is only returned once
+        List<Method> declaredSetters = plan.getDeclaredSetters( "name" );
+        assertEquals( 1, declaredSetters.size() );
+        assertEquals( Child.class, declaredSetters.get( 0 ).getDeclaringClass() );
+
+        assertNull( plan.getField( "missing" ) );
+        assertNull( plan.getSetter( "missing" ) );
+        assertTrue( plan.getDeclaredSetters( "missing" ).isEmpty() );
+    }
+
+    public void testFluentSetterIsNotASetter()
+    {
+        InjectionPlan plan = InjectionPlan.forClass( Fluent.class );
+
+        assertNull( plan.getSetter( "name" ) );
+        assertTrue( plan.getDeclaredSetters( "name" ).isEmpty() );
+        assertNull( plan.getSetter( "count" ) );
+        assertTrue( plan.getDeclaredSetters( "count" ).isEmpty() );
+    }
+
+    public static class Fluent
+    {
+        private String name;
+
+        private static int count;
+
+        public Fluent setName( String name )
+        {
+            this.name = name;
+            return this;
+        }
+
+        public static void setCount( int count )
+        {
+            Fluent.count = count;
+        }
+    }
+
+    public static class Parent
+    {
+        private String name;
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public void setName( String name )
+        {
+            this.name = name;
+        }
+    }
+
+    public static class Child
+        extends Parent
+    {
+        public void setName( String name )
+        {
+            super.setName( name );
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.codehaus.plexus.component;
+
+import junit.framework.TestCase;
+
+public class WeakIdentityMapTest
+    extends TestCase
+{
+    public void testKeysAreComparedByIdentity()
+    {
+        WeakIdentityMap<Object, String> map = new WeakIdentityMap<Object, String>();
+
+        String first = new String( "component" );
+        String second = new String( "component" );
+        map.put( first, "first" );
+        map.put( second, "second" );
+
+        assertEquals( 2, map.size() );
+        assertEquals( "first", map.get( first ) );
+        assertEquals( "second", map.get( second ) );
+        assertNull( map.get( "component" ) );
+
+        assertEquals( "first", map.remove( first ) );
+        assertNull( map.get( first ) );
+        assertEquals( "second", map.get( second ) );
+    }
+
+    public void testClear()
+    {
+        WeakIdentityMap<Object, String> map = new WeakIdentityMap<Object, String>();
+
+        Object key = new Object();
+        map.put( key, "value" );
+
+        assertEquals( 1, map.clear().size() );
+        assertNull( map.get( key ) );
+        assertEquals( 0, map.size() );
+    }
+}
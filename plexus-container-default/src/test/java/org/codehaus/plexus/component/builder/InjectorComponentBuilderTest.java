@@ -0,0 +1,143 @@
+package org.codehaus.plexus.component.builder;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.DefaultContainerConfiguration;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.component.manager.PerLookupComponentManager;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.ComponentRequirement;
+import org.codehaus.plexus.configuration.xml.XmlPlexusConfiguration;
+import org.codehaus.plexus.lifecycle.BasicLifecycleHandler;
+
+import java.util.List;
+
+public class InjectorComponentBuilderTest
+    extends TestCase
+{
+    private DefaultPlexusContainer container;
+
+    protected void setUp()
+        throws Exception
+    {
+        container = new DefaultPlexusContainer( new DefaultContainerConfiguration().setPrecompiledInjection( true ) );
+
+        ComponentDescriptor<Collaborator> collaborator =
+            new ComponentDescriptor<Collaborator>( Collaborator.class, container.getContainerRealm() );
+        collaborator.setRole( Collaborator.class.getName() );
+        container.addComponentDescriptor( collaborator );
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        container.dispose();
+    }
+
+    public void testInjection()
+        throws Exception
+    {
+        ComponentDescriptor<Host> host = new ComponentDescriptor<Host>( Host.class, container.getContainerRealm() );
+        host.setRole( Host.class.getName() );
+        host.setInstantiationStrategy( "per-lookup" );
+        host.addRequirement( new ComponentRequirement( "collaborator", Collaborator.class ) );
+        host.addRequirement( new ComponentRequirement( "setterCollaborator", Collaborator.class ) );
+        XmlPlexusConfiguration configuration = new XmlPlexusConfiguration( "configuration" );
+        configuration.addChild( "greeting", "hello" );
+        configuration.addChild( "max-count", "3" );
+        host.setConfiguration( configuration );
+        container.addComponentDescriptor( host );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            Host instance = container.lookup( Host.class );
+            assertNotNull( instance.collaborator );
+            assertSame( instance.collaborator, instance.setterCollaborator );
+            assertTrue( instance.setterCalled );
+            assertEquals( "hello", instance.greeting );
+            assertEquals( 3, instance.maxCount );
+        }
+    }
+
+    public void testUnsupportedComponentIsCreatedByXBean()
+        throws Exception
+    {
+        ComponentDescriptor<ListHost> host =
+            new ComponentDescriptor<ListHost>( ListHost.class, container.getContainerRealm() );
+        host.setRole( ListHost.class.getName() );
+        XmlPlexusConfiguration configuration = new XmlPlexusConfiguration( "configuration" );
+        XmlPlexusConfiguration names = new XmlPlexusConfiguration( "names" );
+        names.addChild( "name", "a" );
+        names.addChild( "name", "b" );
+        configuration.addChild( names );
+        host.setConfiguration( configuration );
+        container.addComponentDescriptor( host );
+
+        ListHost instance = container.lookup( ListHost.class );
+        assertEquals( 2, instance.names.size() );
+    }
+
+    public void testInjectorIsCompiledForSupportedComponents()
+        throws Exception
+    {
+        ComponentDescriptor<Host> host = new ComponentDescriptor<Host>( Host.class, container.getContainerRealm() );
+        host.setRole( Host.class.getName() );
+        host.addRequirement( new ComponentRequirement( "collaborator", Collaborator.class ) );
+        XmlPlexusConfiguration configuration = new XmlPlexusConfiguration( "configuration" );
+        configuration.addChild( "greeting", "hello" );
+        host.setConfiguration( configuration );
+        InjectorComponentBuilder<Host> hostBuilder = getBuilder( host );
+        assertEquals( "hello", hostBuilder.getComponentManager().getComponent().greeting );
+        assertNotNull( hostBuilder.getCompiledInjector() );
+
+        ComponentDescriptor<ListHost> listHost =
+            new ComponentDescriptor<ListHost>( ListHost.class, container.getContainerRealm() );
+        listHost.setRole( ListHost.class.getName() );
+        configuration = new XmlPlexusConfiguration( "configuration" );
+        XmlPlexusConfiguration names = new XmlPlexusConfiguration( "names" );
+        names.addChild( "name", "a" );
+        configuration.addChild( names );
+        listHost.setConfiguration( configuration );
+        InjectorComponentBuilder<ListHost> listHostBuilder = getBuilder( listHost );
+        assertEquals( 1, listHostBuilder.getComponentManager().getComponent().names.size() );
+        assertNull( listHostBuilder.getCompiledInjector() );
+    }
+
+    private <T> InjectorComponentBuilder<T> getBuilder( ComponentDescriptor<T> descriptor )
+    {
+        PerLookupComponentManager<T> manager =
+            new PerLookupComponentManager<T>( container, new BasicLifecycleHandler( "test" ), descriptor );
+
+        // the container is configured for precompiled injection
+        ComponentBuilder<T> builder = manager.getComponentBuilder();
+        assertTrue( builder instanceof InjectorComponentBuilder );
+        return (InjectorComponentBuilder<T>) builder;
+    }
+
+    public static class Collaborator
+    {
+    }
+
+    public static class Host
+    {
+        private Collaborator collaborator;
+
+        private Collaborator setterCollaborator;
+
+        private boolean setterCalled;
+
+        private String greeting;
+
+        private int maxCount;
+
+        public void setSetterCollaborator( Collaborator setterCollaborator )
+        {
+            this.setterCollaborator = setterCollaborator;
+            setterCalled = true;
+        }
+    }
+
+    public static class ListHost
+    {
+        private List<String> names;
+    }
+}
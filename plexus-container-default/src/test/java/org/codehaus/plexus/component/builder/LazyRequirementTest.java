@@ -0,0 +1,149 @@
+package org.codehaus.plexus.component.builder;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.DefaultContainerConfiguration;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.ComponentRequirement;
+
+public class LazyRequirementTest
+    extends TestCase
+{
+    private DefaultPlexusContainer container;
+
+    protected void tearDown()
+        throws Exception
+    {
+        container.dispose();
+    }
+
+    public void testLazyRequirement()
+        throws Exception
+    {
+        container = new DefaultPlexusContainer();
+        addDescriptors( true );
+
+        Collaborator.created = 0;
+        Host host = container.lookup( Host.class );
+
+        // the collaborator is looked up on the first call
+        assertEquals( 0, Collaborator.created );
+        assertEquals( "hello", host.collaborator.greet() );
+        assertEquals( 1, Collaborator.created );
+        assertEquals( "hello", host.collaborator.greet() );
+        assertEquals( 1, Collaborator.created );
+
+        assertEquals( host.collaborator, host.collaborator );
+    }
+
+    public void testLazyRequirements()
+        throws Exception
+    {
+        container = new DefaultPlexusContainer( new DefaultContainerConfiguration().setLazyRequirements( true ) );
+        addDescriptors( false );
+
+        Collaborator.created = 0;
+        Host host = container.lookup( Host.class );
+
+        assertEquals( 0, Collaborator.created );
+        assertEquals( "hello", host.collaborator.greet() );
+        assertEquals( 1, Collaborator.created );
+    }
+
+    public void testLookupUsesRealmOfInjection()
+        throws Exception
+    {
+        container = new DefaultPlexusContainer();
+        addDescriptors( true );
+
+        ClassRealm childRealm = container.createChildRealm( "child" );
+        ClassRealm oldRealm = container.setLookupRealm( childRealm );
+        Host host;
+        try
+        {
+            host = container.lookup( Host.class );
+        }
+        finally
+        {
+            container.setLookupRealm( oldRealm );
+        }
+
+        // the first call is made outside of the lookup that injected the proxy
+        Collaborator.container = container;
+        try
+        {
+            host.collaborator.greet();
+        }
+        finally
+        {
+            Collaborator.container = null;
+        }
+        assertSame( childRealm, Collaborator.lookupRealm );
+        assertSame( oldRealm, container.getLookupRealm() );
+    }
+
+    public void testEagerRequirement()
+        throws Exception
+    {
+        container = new DefaultPlexusContainer();
+        addDescriptors( false );
+
+        Collaborator.created = 0;
+        Host host = container.lookup( Host.class );
+
+        assertEquals( 1, Collaborator.created );
+        assertTrue( host.collaborator instanceof Collaborator );
+    }
+
+    private void addDescriptors( boolean lazy )
+        throws Exception
+    {
+        ComponentDescriptor<Collaborator> collaborator =
+            new ComponentDescriptor<Collaborator>( Collaborator.class, container.getContainerRealm() );
+        collaborator.setRole( Greeter.class.getName() );
+        container.addComponentDescriptor( collaborator );
+
+        ComponentDescriptor<Host> host = new ComponentDescriptor<Host>( Host.class, container.getContainerRealm() );
+        host.setRole( Host.class.getName() );
+        ComponentRequirement requirement = new ComponentRequirement( "collaborator", Greeter.class );
+        requirement.setLazy( lazy );
+        host.addRequirement( requirement );
+        container.addComponentDescriptor( host );
+    }
+
+    public interface Greeter
+    {
+        String greet();
+    }
+
+    public static class Collaborator
+        implements Greeter
+    {
+        private static int created;
+
+        private static PlexusContainer container;
+
+        private static ClassRealm lookupRealm;
+
+        public Collaborator()
+        {
+            created++;
+            if ( container != null )
+            {
+                lookupRealm = container.getLookupRealm();
+            }
+        }
+
+        public String greet()
+        {
+            return "hello";
+        }
+    }
+
+    public static class Host
+    {
+        private Greeter collaborator;
+    }
+}
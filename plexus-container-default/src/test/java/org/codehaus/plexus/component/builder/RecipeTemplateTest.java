@@ -0,0 +1,206 @@
+package org.codehaus.plexus.component.builder;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.component.configurator.ComponentConfigurator;
+import org.codehaus.plexus.component.configurator.MapOrientedComponentConfigurator;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.ComponentRequirement;
+import org.codehaus.plexus.configuration.xml.XmlPlexusConfiguration;
+import org.apache.xbean.recipe.ObjectRecipe;
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
+
+import java.lang.ref.WeakReference;
+
+public class RecipeTemplateTest
+    extends TestCase
+{
+    private DefaultPlexusContainer container;
+
+    protected void setUp()
+        throws Exception
+    {
+        container = new DefaultPlexusContainer();
+
+        ComponentDescriptor<Collaborator> collaborator =
+            new ComponentDescriptor<Collaborator>( Collaborator.class, container.getContainerRealm() );
+        collaborator.setRole( Collaborator.class.getName() );
+        container.addComponentDescriptor( collaborator );
+
+        ComponentDescriptor<Host> host = new ComponentDescriptor<Host>( Host.class, container.getContainerRealm() );
+        host.setRole( Host.class.getName() );
+        host.setInstantiationStrategy( "per-lookup" );
+        host.addRequirement( new ComponentRequirement( "collaborator", Collaborator.class ) );
+        XmlPlexusConfiguration configuration = new XmlPlexusConfiguration( "configuration" );
+        configuration.addChild( "greeting", "hello" );
+        host.setConfiguration( configuration );
+        container.addComponentDescriptor( host );
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        container.dispose();
+    }
+
+    public void testEveryInstanceIsInjected()
+        throws Exception
+    {
+        Host first = container.lookup( Host.class );
+        Host second = container.lookup( Host.class );
+
+        assertNotSame( first, second );
+        assertEquals( "hello", first.greeting );
+        assertEquals( "hello", second.greeting );
+        assertNotNull( first.collaborator );
+        assertSame( first.collaborator, second.collaborator );
+    }
+
+    public void testEveryRecipeIsNew()
+        throws Exception
+    {
+        XBeanComponentBuilder<Host> builder = new XBeanComponentBuilder<Host>();
+        ComponentDescriptor<Host> descriptor =
+            new ComponentDescriptor<Host>( Host.class, container.getContainerRealm() );
+        XmlPlexusConfiguration configuration = new XmlPlexusConfiguration( "configuration" );
+        configuration.addChild( "greeting", "hello" );
+        descriptor.setConfiguration( configuration );
+
+        // the recipe is stateful, so a fresh one is made from the template each time
+        ObjectRecipe first = builder.createObjectRecipe( descriptor, container.getContainerRealm() );
+        ObjectRecipe second = builder.createObjectRecipe( descriptor, container.getContainerRealm() );
+        assertNotSame( first, second );
+        assertEquals( "hello", ( (Host) first.create() ).greeting );
+        assertEquals( "hello", ( (Host) second.create() ).greeting );
+    }
+
+    public void testConfiguratorIsResolvedAgainWhenAdded()
+        throws Exception
+    {
+        ComponentDescriptor<Host> host = new ComponentDescriptor<Host>( Host.class, container.getContainerRealm() );
+        host.setRole( Host.class.getName() );
+        host.setRoleHint( "custom" );
+        host.setInstantiationStrategy( "per-lookup" );
+        host.setComponentConfigurator( "custom" );
+        XmlPlexusConfiguration configuration = new XmlPlexusConfiguration( "configuration" );
+        configuration.addChild( "greeting", "hello" );
+        host.setConfiguration( configuration );
+        container.addComponentDescriptor( host );
+
+        // the configurator is missing, so the builder configures the component itself
+        assertEquals( "hello", container.lookup( Host.class, "custom" ).greeting );
+
+        ComponentDescriptor<MapOrientedComponentConfigurator> configurator =
+            new ComponentDescriptor<MapOrientedComponentConfigurator>( MapOrientedComponentConfigurator.class,
+                                                                       container.getContainerRealm() );
+        configurator.setRole( ComponentConfigurator.class.getName() );
+        configurator.setRoleHint( "custom" );
+        container.addComponentDescriptor( configurator );
+
+        // and leaves the configuration to the configurator once it is added
+        assertNull( container.lookup( Host.class, "custom" ).greeting );
+    }
+
+    public void testAutowireCandidatesAreRefreshed()
+        throws Exception
+    {
+        ComponentDescriptor<Host> host = new ComponentDescriptor<Host>( Host.class, container.getContainerRealm() );
+        host.setRole( Host.class.getName() );
+        ComponentRequirement requirement = new ComponentRequirement();
+        requirement.setRole( Runnable.class.getName() );
+        XBeanComponentBuilder.RequirementRecipe<Host> recipe =
+            new XBeanComponentBuilder.RequirementRecipe<Host>( host, requirement, container, true );
+
+        assertFalse( recipe.canCreate( Task.class ) );
+
+        ComponentDescriptor<Task> task = new ComponentDescriptor<Task>( Task.class, container.getContainerRealm() );
+        task.setRole( Runnable.class.getName() );
+        container.addComponentDescriptor( task );
+
+        // the candidates are found again once a component of the required role is added
+        assertTrue( recipe.canCreate( Task.class ) );
+        assertTrue( recipe.canCreate( Runnable.class ) );
+        assertFalse( recipe.canCreate( Collaborator.class ) );
+    }
+
+    public void testDisposedManagerDoesNotReferenceRealm()
+        throws Exception
+    {
+        // a realm defining its own copies of the classes of this test
+        ClassRealm realm = container.getClassWorld().newRealm( "removed", null );
+        realm.addURL( getClass().getProtectionDomain().getCodeSource().getLocation() );
+        Class<?> implementation = realm.loadClass( RealmHost.class.getName() );
+        assertNotSame( RealmHost.class, implementation );
+
+        ComponentDescriptor<Object> role =
+            new ComponentDescriptor<Object>( (Class) realm.loadClass( RealmComponent.class.getName() ), realm );
+        role.setRole( RealmRole.class.getName() );
+        container.addComponentDescriptor( role );
+
+        ComponentDescriptor<Object> host = new ComponentDescriptor<Object>( (Class) implementation, realm );
+        host.setRole( RealmHost.class.getName() );
+        ComponentRequirement requirement = new ComponentRequirement();
+        requirement.setRole( RealmRole.class.getName() );
+        host.addRequirement( requirement );
+        container.addComponentDescriptor( host );
+
+        // the auto matched requirement watches the components of the role loaded by the realm
+        ClassRealm oldRealm = container.setLookupRealm( realm );
+        try
+        {
+            assertSame( implementation, container.lookup( host ).getClass() );
+        }
+        finally
+        {
+            container.setLookupRealm( oldRealm );
+        }
+
+        container.removeComponentRealm( realm );
+        container.getClassWorld().disposeRealm( "removed" );
+
+        WeakReference<ClassRealm> reference = new WeakReference<ClassRealm>( realm );
+        realm = null;
+        implementation = null;
+        role = null;
+        host = null;
+        for ( int i = 0; i < 20 && reference.get() != null; i++ )
+        {
+            System.gc();
+            Thread.sleep( 10 );
+        }
+        assertNull( reference.get() );
+    }
+
+    public static class Collaborator
+    {
+    }
+
+    public static class Task
+        implements Runnable
+    {
+        public void run()
+        {
+        }
+    }
+
+    public interface RealmRole
+    {
+    }
+
+    public static class RealmComponent
+        implements RealmRole
+    {
+    }
+
+    public static class RealmHost
+    {
+        private RealmRole role;
+    }
+
+    public static class Host
+    {
+        private Collaborator collaborator;
+
+        private String greeting;
+    }
+}
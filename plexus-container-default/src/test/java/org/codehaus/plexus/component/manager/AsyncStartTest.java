@@ -0,0 +1,185 @@
+package org.codehaus.plexus.component.manager;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.DefaultContainerConfiguration;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.codehaus.plexus.lifecycle.BasicLifecycleHandler;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.StartPhase;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Startable;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.StartingException;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class AsyncStartTest
+    extends TestCase
+{
+    private ExecutorService executor;
+
+    private DefaultPlexusContainer container;
+
+    protected void setUp()
+        throws Exception
+    {
+        executor = Executors.newSingleThreadExecutor();
+
+        container = new DefaultPlexusContainer( new DefaultContainerConfiguration().setStartExecutor( executor ) );
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        container.dispose();
+        executor.shutdown();
+    }
+
+    public void testLookupWaitsForStart()
+        throws Exception
+    {
+        ComponentDescriptor<SlowStartComponent> descriptor = addDescriptor( SlowStartComponent.class );
+
+        SlowStartComponent.latch = new CountDownLatch( 1 );
+
+        // the component is returned while its start is still running on the executor
+        SlowStartComponent component = container.getComponentRegistry().lookupStarting( descriptor );
+        assertFalse( component.started );
+
+        final SlowStartComponent[] lookedUp = new SlowStartComponent[1];
+        Thread thread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    lookedUp[0] = container.lookup( SlowStartComponent.class );
+                }
+                catch ( ComponentLookupException e )
+                {
+                    // lookedUp stays null
+                }
+            }
+        };
+        thread.start();
+
+        SlowStartComponent.latch.countDown();
+        thread.join( 5000 );
+
+        // the lookup returns the same instance once it has been started
+        assertSame( component, lookedUp[0] );
+        assertTrue( component.started );
+    }
+
+    public void testFailedStartIsReported()
+        throws Exception
+    {
+        ComponentDescriptor<FailingStartComponent> descriptor = addDescriptor( FailingStartComponent.class );
+
+        Object component = container.getComponentRegistry().lookupStarting( descriptor );
+        try
+        {
+            container.getComponentRegistry().awaitStarted( component );
+            fail( "Expected ComponentLookupException" );
+        }
+        catch ( ComponentLookupException expected )
+        {
+            assertTrue( expected.getCause() instanceof StartingException );
+        }
+
+        try
+        {
+            container.lookup( FailingStartComponent.class );
+            fail( "Expected ComponentLookupException" );
+        }
+        catch ( ComponentLookupException expected )
+        {
+        }
+    }
+
+    public void testFailedStartDoesNotKeepComponent()
+        throws Exception
+    {
+        ComponentDescriptor<FailingStartComponent> descriptor =
+            new ComponentDescriptor<FailingStartComponent>( FailingStartComponent.class, container.getContainerRealm() );
+        descriptor.setRole( FailingStartComponent.class.getName() );
+        descriptor.setAsyncStart( true );
+        BasicLifecycleHandler lifecycleHandler = new BasicLifecycleHandler( "test" );
+        lifecycleHandler.addBeginSegment( new StartPhase() );
+        PerLookupComponentManager<FailingStartComponent> manager =
+            new PerLookupComponentManager<FailingStartComponent>( container, lifecycleHandler, descriptor );
+
+        Object component = new FailingStartComponent();
+        manager.start( component );
+        try
+        {
+            manager.awaitStarted( component );
+            fail( "Expected ComponentLifecycleException" );
+        }
+        catch ( ComponentLifecycleException expected )
+        {
+        }
+
+        // the failed start is kept for the component, but does not keep it alive
+        WeakReference<Object> reference = new WeakReference<Object>( component );
+        component = null;
+        for ( int i = 0; i < 20 && reference.get() != null; i++ )
+        {
+            System.gc();
+            Thread.sleep( 10 );
+        }
+        assertNull( reference.get() );
+    }
+
+    private <T> ComponentDescriptor<T> addDescriptor( Class<T> type )
+        throws Exception
+    {
+        ComponentDescriptor<T> descriptor = new ComponentDescriptor<T>( type, container.getContainerRealm() );
+        descriptor.setRole( type.getName() );
+        descriptor.setAsyncStart( true );
+        container.addComponentDescriptor( descriptor );
+        return descriptor;
+    }
+
+    public static class SlowStartComponent
+        implements Startable
+    {
+        private static CountDownLatch latch;
+
+        private volatile boolean started;
+
+        public void start()
+        {
+            try
+            {
+                latch.await();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            started = true;
+        }
+
+        public void stop()
+        {
+        }
+    }
+
+    public static class FailingStartComponent
+        implements Startable
+    {
+        public void start()
+            throws StartingException
+        {
+            throw new StartingException( "failed" );
+        }
+
+        public void stop()
+        {
+        }
+    }
+}
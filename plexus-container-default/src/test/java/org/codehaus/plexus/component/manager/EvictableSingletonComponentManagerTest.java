@@ -0,0 +1,192 @@
+package org.codehaus.plexus.component.manager;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
+import org.codehaus.plexus.lifecycle.BasicLifecycleHandler;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.DisposePhase;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class EvictableSingletonComponentManagerTest
+    extends TestCase
+{
+    private DefaultPlexusContainer container;
+
+    private EvictableSingletonComponentManager<EvictableComponent> manager;
+
+    protected void setUp()
+        throws Exception
+    {
+        container = new DefaultPlexusContainer();
+
+        ComponentDescriptor<EvictableComponent> descriptor =
+            new ComponentDescriptor<EvictableComponent>( EvictableComponent.class, container.getContainerRealm() );
+        descriptor.setRole( Component.class.getName() );
+        descriptor.setInstantiationStrategy( "evictable-singleton" );
+        descriptor.setEvictionIdleTimeout( 50 );
+
+        BasicLifecycleHandler lifecycleHandler = new BasicLifecycleHandler( "test" );
+        lifecycleHandler.addEndSegment( new DisposePhase() );
+        manager = new EvictableSingletonComponentManager<EvictableComponent>( container, lifecycleHandler, descriptor );
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        manager.dispose();
+        container.dispose();
+    }
+
+    public void testIdleSingletonIsEvicted()
+        throws Exception
+    {
+        EvictableComponent first = manager.getComponent();
+        assertSame( first, manager.getComponent() );
+        assertTrue( manager.isInstantiated() );
+
+        for ( int i = 0; i < 100 && manager.isInstantiated(); i++ )
+        {
+            Thread.sleep( 10 );
+        }
+
+        // the idle singleton has been destroyed
+        assertFalse( manager.isInstantiated() );
+        assertTrue( first.disposed );
+        assertEquals( 1, manager.getEvictionCount() );
+        assertEquals( 0, manager.getRecreationCount() );
+
+        // and the next lookup creates a new one
+        EvictableComponent second = manager.getComponent();
+        assertNotSame( first, second );
+        assertFalse( second.disposed );
+        assertEquals( 1, manager.getRecreationCount() );
+    }
+
+    public void testDispose()
+        throws Exception
+    {
+        EvictableComponent component = manager.getComponent();
+
+        manager.dispose();
+
+        assertTrue( component.disposed );
+        assertEquals( 0, manager.getEvictionCount() );
+    }
+
+    public void testDisposeDuringCreation()
+        throws Exception
+    {
+        ComponentDescriptor<BlockingComponent> descriptor =
+            new ComponentDescriptor<BlockingComponent>( BlockingComponent.class, container.getContainerRealm() );
+        descriptor.setRole( Component.class.getName() );
+        descriptor.setInstantiationStrategy( "evictable-singleton" );
+        BasicLifecycleHandler lifecycleHandler = new BasicLifecycleHandler( "test" );
+        lifecycleHandler.addEndSegment( new DisposePhase() );
+        final EvictableSingletonComponentManager<BlockingComponent> manager =
+            new EvictableSingletonComponentManager<BlockingComponent>( container, lifecycleHandler, descriptor );
+
+        BlockingComponent.created = new CountDownLatch( 1 );
+        BlockingComponent.proceed = new CountDownLatch( 1 );
+        final Throwable[] failure = new Throwable[1];
+        Thread creator = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    manager.getComponent();
+                }
+                catch ( Throwable e )
+                {
+                    failure[0] = e;
+                }
+            }
+        };
+        creator.start();
+        assertTrue( BlockingComponent.created.await( 5, TimeUnit.SECONDS ) );
+
+        Thread disposer = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    manager.dispose();
+                }
+                catch ( ComponentLifecycleException e )
+                {
+                    // the instance stays undisposed
+                }
+            }
+        };
+        disposer.start();
+        Thread.sleep( 50 );
+        BlockingComponent.proceed.countDown();
+        creator.join( 5000 );
+        disposer.join( 5000 );
+
+        // the instance created while the manager was disposed is destroyed, and not handed out
+        assertTrue( failure[0] instanceof ComponentLifecycleException );
+        assertTrue( BlockingComponent.instance.disposed );
+    }
+
+    public void testEvictionExecutorIsShutDownWithContainer()
+        throws Exception
+    {
+        ScheduledExecutorService evictor = container.getEvictionExecutor();
+        Future<ClassLoader> contextClassLoader = evictor.submit( new Callable<ClassLoader>()
+        {
+            public ClassLoader call()
+            {
+                return Thread.currentThread().getContextClassLoader();
+            }
+        } );
+        assertNull( contextClassLoader.get() );
+
+        container.dispose();
+        assertTrue( evictor.isShutdown() );
+    }
+
+    public static class BlockingComponent
+        implements Component, Disposable
+    {
+        private static CountDownLatch created;
+
+        private static CountDownLatch proceed;
+
+        private static BlockingComponent instance;
+
+        private volatile boolean disposed;
+
+        public BlockingComponent()
+            throws InterruptedException
+        {
+            instance = this;
+            created.countDown();
+            proceed.await();
+        }
+
+        public void dispose()
+        {
+            disposed = true;
+        }
+    }
+
+    public static class EvictableComponent
+        implements Component, Disposable
+    {
+        private volatile boolean disposed;
+
+        public void dispose()
+        {
+            disposed = true;
+        }
+    }
+}
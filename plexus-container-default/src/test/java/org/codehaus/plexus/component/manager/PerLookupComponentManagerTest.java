@@ -0,0 +1,95 @@
+package org.codehaus.plexus.component.manager;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.lifecycle.BasicLifecycleHandler;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.DisposePhase;
+
+public class PerLookupComponentManagerTest
+    extends TestCase
+{
+    private DefaultPlexusContainer container;
+
+    private ComponentDescriptor<EqualComponent> descriptor;
+
+    private BasicLifecycleHandler lifecycleHandler;
+
+    protected void setUp()
+        throws Exception
+    {
+        container = new DefaultPlexusContainer();
+
+        descriptor = new ComponentDescriptor<EqualComponent>( EqualComponent.class, container.getContainerRealm() );
+        descriptor.setRole( Component.class.getName() );
+
+        lifecycleHandler = new BasicLifecycleHandler( "test" );
+        lifecycleHandler.addEndSegment( new DisposePhase() );
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        container.dispose();
+    }
+
+    public void testInstancesAreTrackedByIdentity()
+        throws Exception
+    {
+        PerLookupComponentManager<EqualComponent> manager =
+            new PerLookupComponentManager<EqualComponent>( container, lifecycleHandler, descriptor );
+
+        // the instances are equal, but each one is destroyed
+        EqualComponent a = manager.getComponent();
+        EqualComponent b = manager.getComponent();
+        EqualComponent c = manager.getComponent();
+        assertNotSame( a, b );
+
+        manager.release( c );
+        assertTrue( c.disposed );
+
+        manager.dispose();
+        assertTrue( a.disposed );
+        assertTrue( b.disposed );
+    }
+
+    public void testUntracked()
+        throws Exception
+    {
+        PerLookupComponentManager<EqualComponent> manager =
+            new PerLookupComponentManager<EqualComponent>( container, lifecycleHandler, descriptor, false );
+        assertFalse( manager.isTracked() );
+
+        EqualComponent a = manager.getComponent();
+        EqualComponent b = manager.getComponent();
+
+        manager.release( b );
+        assertTrue( b.disposed );
+
+        // untracked instances are not destroyed by dispose
+        manager.dispose();
+        assertFalse( a.disposed );
+    }
+
+    public static class EqualComponent
+        implements Component, Disposable
+    {
+        private boolean disposed;
+
+        public void dispose()
+        {
+            disposed = true;
+        }
+
+        public boolean equals( Object o )
+        {
+            return o instanceof EqualComponent;
+        }
+
+        public int hashCode()
+        {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.codehaus.plexus.component.manager;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
+import org.codehaus.plexus.lifecycle.BasicLifecycleHandler;
+
+public class PerThreadComponentManagerTest
+    extends TestCase
+{
+    private DefaultPlexusContainer container;
+
+    private PerThreadComponentManager<DefaultComponent> manager;
+
+    protected void setUp()
+        throws Exception
+    {
+        container = new DefaultPlexusContainer();
+
+        ComponentDescriptor<DefaultComponent> descriptor =
+            new ComponentDescriptor<DefaultComponent>( DefaultComponent.class, container.getContainerRealm() );
+        descriptor.setRole( Component.class.getName() );
+        descriptor.setInstantiationStrategy( "per-thread" );
+
+        manager = new PerThreadComponentManager<DefaultComponent>( container, new BasicLifecycleHandler( "test" ), descriptor );
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        container.dispose();
+    }
+
+    public void testInstancePerThread()
+        throws Exception
+    {
+        DefaultComponent component = manager.getComponent();
+        assertSame( component, manager.getComponent() );
+
+        // releasing does not discard the instance of the thread
+        manager.release( component );
+        assertSame( component, manager.getComponent() );
+
+        final Object[] other = new Object[1];
+        Thread thread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    other[0] = manager.getComponent();
+                }
+                catch ( Exception e )
+                {
+                    // other stays null
+                }
+            }
+        };
+        thread.start();
+        thread.join( 5000 );
+
+        assertNotNull( other[0] );
+        assertNotSame( component, other[0] );
+
+        manager.dispose();
+        assertEquals( 0, manager.getInstanceCount() );
+        try
+        {
+            manager.getComponent();
+            fail( "Expected ComponentLifecycleException" );
+        }
+        catch ( ComponentLifecycleException e )
+        {
+            // expected
+        }
+    }
+
+    public void testReusedThreadIdGetsNewInstance()
+        throws Exception
+    {
+        final Object[] instances = new Object[2];
+        for ( int i = 0; i < instances.length; i++ )
+        {
+            final int index = i;
+            Thread thread = new Thread()
+            {
+                public long getId()
+                {
+                    // both threads have the same id, as if the id of the first one was reused
+                    return Long.MAX_VALUE;
+                }
+
+                public void run()
+                {
+                    try
+                    {
+                        instances[index] = manager.getComponent();
+                    }
+                    catch ( Exception e )
+                    {
+                        // the instance stays null
+                    }
+                }
+            };
+            thread.start();
+            thread.join( 5000 );
+        }
+
+        assertNotNull( instances[0] );
+        assertNotNull( instances[1] );
+        assertNotSame( instances[0], instances[1] );
+        assertEquals( 1, manager.getInstanceCount() );
+    }
+}
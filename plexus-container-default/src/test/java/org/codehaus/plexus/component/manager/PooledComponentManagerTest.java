@@ -0,0 +1,145 @@
+package org.codehaus.plexus.component.manager;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
+import org.codehaus.plexus.lifecycle.BasicLifecycleHandler;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Suspendable;
+
+public class PooledComponentManagerTest
+    extends TestCase
+{
+    private DefaultPlexusContainer container;
+
+    private PooledComponentManager<PooledComponent> manager;
+
+    protected void setUp()
+        throws Exception
+    {
+        container = new DefaultPlexusContainer();
+
+        ComponentDescriptor<PooledComponent> descriptor =
+            new ComponentDescriptor<PooledComponent>( PooledComponent.class, container.getContainerRealm() );
+        descriptor.setRole( Component.class.getName() );
+        descriptor.setInstantiationStrategy( "pooled" );
+        descriptor.setPoolMaxSize( 2 );
+
+        manager = new PooledComponentManager<PooledComponent>( container, new BasicLifecycleHandler( "test" ), descriptor );
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        manager.dispose();
+        container.dispose();
+    }
+
+    public void testBorrowAndReturn()
+        throws Exception
+    {
+        PooledComponent a = manager.getComponent();
+        PooledComponent b = manager.getComponent();
+        assertNotSame( a, b );
+
+        manager.release( a );
+        assertTrue( a.suspended );
+
+        // the returned instance is reused and resumed
+        PooledComponent c = manager.getComponent();
+        assertSame( a, c );
+        assertFalse( c.suspended );
+
+        assertEquals( 1, manager.getHitCount() );
+        assertEquals( 2, manager.getMissCount() );
+        assertEquals( 2, manager.getActiveCount() );
+        assertEquals( 0, manager.getIdleCount() );
+
+        manager.release( b );
+        manager.release( c );
+        assertEquals( 0, manager.getActiveCount() );
+        assertEquals( 2, manager.getIdleCount() );
+    }
+
+    public void testLookupWaitsForRelease()
+        throws Exception
+    {
+        PooledComponent a = manager.getComponent();
+        manager.getComponent();
+
+        final Component[] borrowed = new Component[1];
+        Thread thread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    borrowed[0] = manager.getComponent();
+                }
+                catch ( Exception e )
+                {
+                    // borrowed stays null
+                }
+            }
+        };
+        thread.start();
+
+        // the pool is exhausted, so the lookup waits until an instance is released
+        for ( int i = 0; i < 100 && manager.getWaitCount() == 0; i++ )
+        {
+            Thread.sleep( 10 );
+        }
+        assertEquals( 1, manager.getWaitCount() );
+
+        manager.release( a );
+        thread.join( 5000 );
+        assertSame( a, borrowed[0] );
+    }
+
+    public void testLookupFailsAfterMaxWait()
+        throws Exception
+    {
+        ComponentDescriptor<PooledComponent> descriptor =
+            new ComponentDescriptor<PooledComponent>( PooledComponent.class, container.getContainerRealm() );
+        descriptor.setRole( Component.class.getName() );
+        descriptor.setInstantiationStrategy( "pooled" );
+        descriptor.setPoolMaxSize( 1 );
+        descriptor.setPoolMaxWait( 50 );
+        PooledComponentManager<PooledComponent> manager =
+            new PooledComponentManager<PooledComponent>( container, new BasicLifecycleHandler( "test" ), descriptor );
+        try
+        {
+            manager.getComponent();
+            try
+            {
+                manager.getComponent();
+                fail( "Expected ComponentLifecycleException" );
+            }
+            catch ( ComponentLifecycleException e )
+            {
+                // expected
+            }
+            assertEquals( 1, manager.getWaitCount() );
+        }
+        finally
+        {
+            manager.dispose();
+        }
+    }
+
+    public static class PooledComponent
+        implements Component, Suspendable
+    {
+        private boolean suspended;
+
+        public void suspend()
+        {
+            suspended = true;
+        }
+
+        public void resume()
+        {
+            suspended = false;
+        }
+    }
+}
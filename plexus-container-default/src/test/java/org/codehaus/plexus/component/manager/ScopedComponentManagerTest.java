@@ -0,0 +1,129 @@
+package org.codehaus.plexus.component.manager;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.component.ScopeHandle;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+
+public class ScopedComponentManagerTest
+    extends TestCase
+{
+    private DefaultPlexusContainer container;
+
+    protected void setUp()
+        throws Exception
+    {
+        container = new DefaultPlexusContainer();
+
+        ComponentDescriptor<ScopedComponent> descriptor =
+            new ComponentDescriptor<ScopedComponent>( ScopedComponent.class, container.getContainerRealm() );
+        descriptor.setRole( Component.class.getName() );
+        descriptor.setRoleHint( "scoped" );
+        descriptor.setInstantiationStrategy( "scoped" );
+        container.addComponentDescriptor( descriptor );
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        container.dispose();
+    }
+
+    public void testInstancePerScope()
+        throws Exception
+    {
+        ScopeHandle request = container.enterScope( "request" );
+        ScopedComponent a = (ScopedComponent) container.lookup( Component.class, "scoped" );
+        assertSame( a, container.lookup( Component.class, "scoped" ) );
+
+        // a nested scope has its own instance
+        ScopeHandle nested = container.enterScope( "nested" );
+        ScopedComponent b = (ScopedComponent) container.lookup( Component.class, "scoped" );
+        assertNotSame( a, b );
+
+        container.exitScope();
+        assertFalse( nested.isActive() );
+        assertTrue( b.disposed );
+        assertFalse( a.disposed );
+        assertSame( a, container.lookup( Component.class, "scoped" ) );
+
+        request.exit();
+        assertFalse( request.isActive() );
+        assertTrue( a.disposed );
+    }
+
+    public void testExitingOuterScopeExitsNestedScopes()
+        throws Exception
+    {
+        ScopeHandle outer = container.enterScope( "outer" );
+        ScopeHandle inner = container.enterScope( "inner" );
+        ScopedComponent component = (ScopedComponent) container.lookup( Component.class, "scoped" );
+
+        outer.exit();
+        assertFalse( inner.isActive() );
+        assertTrue( component.disposed );
+    }
+
+    public void testLookupOutsideScopeFails()
+        throws Exception
+    {
+        try
+        {
+            container.lookup( Component.class, "scoped" );
+            fail( "Expected ComponentLookupException" );
+        }
+        catch ( ComponentLookupException e )
+        {
+            // expected
+        }
+    }
+
+    public void testScopesArePerContainer()
+        throws Exception
+    {
+        DefaultPlexusContainer other = new DefaultPlexusContainer();
+        try
+        {
+            ComponentDescriptor<ScopedComponent> descriptor =
+                new ComponentDescriptor<ScopedComponent>( ScopedComponent.class, other.getContainerRealm() );
+            descriptor.setRole( Component.class.getName() );
+            descriptor.setRoleHint( "scoped" );
+            descriptor.setInstantiationStrategy( "scoped" );
+            other.addComponentDescriptor( descriptor );
+
+            ScopeHandle scope = container.enterScope( "request" );
+
+            // the scope entered in one container is not visible to the other
+            assertNotNull( container.lookup( Component.class, "scoped" ) );
+            try
+            {
+                other.lookup( Component.class, "scoped" );
+                fail( "Expected ComponentLookupException" );
+            }
+            catch ( ComponentLookupException e )
+            {
+                // expected
+            }
+            assertNull( other.getComponentScopes().getCurrentScope() );
+
+            scope.exit();
+        }
+        finally
+        {
+            other.dispose();
+        }
+    }
+
+    public static class ScopedComponent
+        implements Component, Disposable
+    {
+        private boolean disposed;
+
+        public void dispose()
+        {
+            disposed = true;
+        }
+    }
+}
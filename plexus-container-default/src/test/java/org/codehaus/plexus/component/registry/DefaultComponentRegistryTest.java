@@ -2,10 +2,27 @@ package org.codehaus.plexus.component.registry;
 
 import junit.framework.TestCase;
 
+import org.codehaus.plexus.ComponentRegistry;
+import org.codehaus.plexus.DefaultContainerConfiguration;
 import org.codehaus.plexus.DefaultPlexusContainer;
 import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.codehaus.plexus.component.ComponentHandle;
+import org.codehaus.plexus.component.manager.Component;
+import org.codehaus.plexus.component.manager.DefaultComponent;
 import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.ComponentRequirement;
 import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.codehaus.plexus.component.repository.exception.ComponentRepositoryException;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class DefaultComponentRegistryTest
     extends TestCase
@@ -56,4 +73,200 @@ public class DefaultComponentRegistryTest
         assertNull( lookupThread.getComponent() );
     }
 
+    public void testResolve()
+        throws Exception
+    {
+        PlexusContainer plexus = new DefaultPlexusContainer();
+        ClassRealm realm = plexus.createChildRealm( "resolve-test" );
+
+        ComponentDescriptor<DefaultComponent> singleton = new ComponentDescriptor<DefaultComponent>( DefaultComponent.class, realm );
+        singleton.setRole( Component.class.getName() );
+        plexus.addComponentDescriptor( singleton );
+
+        ComponentDescriptor<DefaultComponent> perLookup = new ComponentDescriptor<DefaultComponent>( DefaultComponent.class, realm );
+        perLookup.setRole( Component.class.getName() );
+        perLookup.setRoleHint( "per-lookup" );
+        perLookup.setInstantiationStrategy( "per-lookup" );
+        plexus.addComponentDescriptor( perLookup );
+
+        ComponentHandle<Component> singletonHandle = plexus.resolve( Component.class );
+        assertTrue( singletonHandle.isValid() );
+        assertSame( singletonHandle, plexus.resolve( Component.class ) );
+        assertEquals( "default", singletonHandle.getComponentDescriptor().getRoleHint() );
+
+        Component component = singletonHandle.get();
+        assertSame( component, singletonHandle.get() );
+        assertSame( component, plexus.lookup( Component.class ) );
+
+        // releasing the singleton must not leave the handle returning the released instance
+        plexus.release( component );
+        assertNotSame( component, singletonHandle.get() );
+        assertSame( singletonHandle.get(), plexus.lookup( Component.class ) );
+
+        ComponentHandle<Component> perLookupHandle = plexus.resolve( Component.class, "per-lookup" );
+        assertNotSame( perLookupHandle.get(), perLookupHandle.get() );
+
+        // removing the realm invalidates the handles
+        plexus.removeComponentRealm( realm );
+        assertFalse( singletonHandle.isValid() );
+        assertFalse( perLookupHandle.isValid() );
+        try
+        {
+            singletonHandle.get();
+            fail( "Expected ComponentLookupException" );
+        }
+        catch ( ComponentLookupException e )
+        {
+            // expected
+        }
+
+        plexus.dispose();
+    }
+
+    public void testAddComponentDescriptors()
+        throws Exception
+    {
+        DefaultPlexusContainer plexus = new DefaultPlexusContainer();
+        ClassRealm realm = plexus.createChildRealm( "batch-test" );
+
+        ComponentDescriptor<DefaultComponent> first = new ComponentDescriptor<DefaultComponent>( DefaultComponent.class, realm );
+        first.setRole( Component.class.getName() );
+        first.setRoleHint( "first" );
+
+        ComponentDescriptor<DefaultComponent> second = new ComponentDescriptor<DefaultComponent>( DefaultComponent.class, realm );
+        second.setRole( Component.class.getName() );
+        second.setRoleHint( "second" );
+
+        ComponentDescriptor<DefaultComponent> invalid = new ComponentDescriptor<DefaultComponent>( DefaultComponent.class, realm );
+        invalid.setRole( Component.class.getName() );
+        invalid.setRoleHint( "invalid" );
+        invalid.setInstantiationStrategy( "unknown" );
+
+        ComponentRegistry registry = plexus.getComponentRegistry();
+
+        // an invalid descriptor rejects the whole batch
+        try
+        {
+            registry.addComponentDescriptors( Arrays.asList( first, invalid ) );
+            fail( "Expected ComponentRepositoryException" );
+        }
+        catch ( ComponentRepositoryException e )
+        {
+            // expected
+        }
+        assertNull( registry.getComponentDescriptor( Component.class, "first" ) );
+
+        registry.addComponentDescriptors( Arrays.asList( first, second ) );
+        assertSame( first, registry.getComponentDescriptor( Component.class, "first" ) );
+        assertSame( second, registry.getComponentDescriptor( Component.class, "second" ) );
+        assertNotNull( plexus.lookup( Component.class, "second" ) );
+
+        plexus.dispose();
+    }
+
+    public void testParallelDispose()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try
+        {
+            PlexusContainer plexus = new DefaultPlexusContainer( new DefaultContainerConfiguration()
+                .setDisposeExecutor( executor ) );
+            addDisposeOrderComponents( plexus );
+
+            List<String> disposed = Collections.synchronizedList( new ArrayList<String>() );
+            plexus.lookup( ChildComponent.class ).disposed = disposed;
+            plexus.lookup( ParentComponent.class ).disposed = disposed;
+
+            plexus.dispose();
+
+            // the component requiring the child is disposed first
+            assertEquals( Arrays.asList( "parent", "child" ), disposed );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testParallelDisposeTimeout()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try
+        {
+            PlexusContainer plexus = new DefaultPlexusContainer( new DefaultContainerConfiguration()
+                .setDisposeExecutor( executor )
+                .setComponentDisposeTimeout( 50 ) );
+            addDisposeOrderComponents( plexus );
+
+            List<String> disposed = Collections.synchronizedList( new ArrayList<String>() );
+            plexus.lookup( ChildComponent.class ).disposed = disposed;
+            ParentComponent parent = plexus.lookup( ParentComponent.class );
+            parent.disposed = disposed;
+            parent.latch = new CountDownLatch( 1 );
+
+            // the child is disposed without waiting for the parent any longer
+            plexus.dispose();
+            assertEquals( Arrays.asList( "child" ), disposed );
+
+            parent.latch.countDown();
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private void addDisposeOrderComponents( PlexusContainer plexus )
+        throws ComponentRepositoryException
+    {
+        ComponentDescriptor<ChildComponent> child =
+            new ComponentDescriptor<ChildComponent>( ChildComponent.class, plexus.getContainerRealm() );
+        child.setRole( ChildComponent.class.getName() );
+        plexus.addComponentDescriptor( child );
+
+        ComponentDescriptor<ParentComponent> parent =
+            new ComponentDescriptor<ParentComponent>( ParentComponent.class, plexus.getContainerRealm() );
+        parent.setRole( ParentComponent.class.getName() );
+        parent.addRequirement( new ComponentRequirement( "child", ChildComponent.class.getName(), null ) );
+        plexus.addComponentDescriptor( parent );
+    }
+
+    public static class ChildComponent
+        implements Disposable
+    {
+        private List<String> disposed;
+
+        public void dispose()
+        {
+            disposed.add( "child" );
+        }
+    }
+
+    public static class ParentComponent
+        implements Disposable
+    {
+        private ChildComponent child;
+
+        private List<String> disposed;
+
+        private CountDownLatch latch;
+
+        public void dispose()
+        {
+            if ( latch != null )
+            {
+                try
+                {
+                    latch.await();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            disposed.add( "parent" );
+        }
+    }
 }
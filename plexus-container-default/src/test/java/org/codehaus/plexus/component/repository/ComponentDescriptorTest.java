@@ -18,6 +18,7 @@ package org.codehaus.plexus.component.repository;
 
 import junit.framework.TestCase;
 import org.codehaus.plexus.component.repository.io.PlexusTools;
+import org.codehaus.plexus.configuration.PlexusConfigurationException;
 import org.codehaus.plexus.classworlds.ClassWorld;
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
 
@@ -101,4 +102,32 @@ public class ComponentDescriptorTest
         
         assertFalse(desc.equals(desc2));
     }
+
+    public void testPoolSettings()
+        throws Exception
+    {
+        ClassWorld classWorld = new ClassWorld( "test", Thread.currentThread().getContextClassLoader() );
+        ClassRealm realm = classWorld.getRealm( "test" );
+
+        ComponentDescriptor<?> descriptor = PlexusTools.buildComponentDescriptor(
+            "<component><implementation>java.lang.String</implementation><role>c1</role>" +
+            "<pool-min-size>1</pool-min-size><pool-max-size>4</pool-max-size><pool-max-wait>500</pool-max-wait>" +
+            "</component>", realm );
+
+        assertEquals( 1, descriptor.getPoolMinSize() );
+        assertEquals( 4, descriptor.getPoolMaxSize() );
+        assertEquals( 500, descriptor.getPoolMaxWait() );
+
+        try
+        {
+            PlexusTools.buildComponentDescriptor(
+                "<component><implementation>java.lang.String</implementation><role>c1</role>" +
+                "<pool-max-size>4294967297</pool-max-size></component>", realm );
+            fail( "Expected PlexusConfigurationException" );
+        }
+        catch ( PlexusConfigurationException e )
+        {
+            // the size does not fit in an int
+        }
+    }
 }